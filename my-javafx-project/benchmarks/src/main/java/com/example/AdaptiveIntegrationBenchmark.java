@@ -0,0 +1,55 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the error-controlled rules over [0, 2] at several tolerances.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdaptiveIntegrationBenchmark {
+    private static final double START = 0;
+    private static final double END = 2;
+    private static final long MAX_EVALUATIONS = 10_000_000;
+
+    @Param({Corpus.PRODUCT, Corpus.NESTED})
+    public String expression;
+
+    @Param({"1e-6", "1e-10"})
+    public double tolerance;
+
+    @Benchmark
+    public IntegrationResult adaptiveSimpson() {
+        return IntegrationMethods.AdaptiveSimpsonRule(tolerance, tolerance, MAX_EVALUATIONS, START, END, expression);
+    }
+
+    @Benchmark
+    public IntegrationResult gaussKronrod() {
+        return IntegrationMethods.GaussKronrodRule(tolerance, tolerance, MAX_EVALUATIONS, START, END, expression);
+    }
+
+    @Benchmark
+    public IntegrationResult romberg() {
+        return IntegrationMethods.RombergRule(tolerance, tolerance, 25, START, END, expression);
+    }
+
+    @Benchmark
+    public double gaussLegendre() {
+        return IntegrationMethods.GaussLegendreRule(20, START, END, expression);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example;
+
+/**
+ * Expressions in x used by the benchmarks, from a plain polynomial to nested transcendental
+ * functions with repeated subexpressions.
+ */
+final class Corpus {
+    static final String POLYNOMIAL = "x^3-4*x^2+x-5";
+    static final String PRODUCT = "sin(x)*x";
+    static final String GAUSSIAN = "e^(-(x^2)/2)";
+    static final String RATIONAL = "ln(x+1)/(x^2+1)";
+    static final String REPEATED = "sin(x)^2+cos(x)^2+sin(x)*cos(x)";
+    static final String NESTED = "log(2,x+1)*tan(x/4)-cos(sin(x)*x)";
+
+    private Corpus() {
+    }
+}
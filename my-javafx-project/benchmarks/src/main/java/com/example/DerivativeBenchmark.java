@@ -0,0 +1,62 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one derivative at a point, by finite differences and exactly, and of the derivatives
+ * at 1001 points of a grid. Calls go through the source text, as in the application.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DerivativeBenchmark {
+    private static final double H = 1e-3;
+    private static final double X = 0.7;
+
+    @Param({Corpus.PRODUCT, Corpus.NESTED})
+    public String expression;
+
+    @Benchmark
+    public double firstDerivative() {
+        return DerivationMethods.firstDerivative(H, X, expression);
+    }
+
+    @Benchmark
+    public double firstDerivative5point() {
+        return DerivationMethods.firstDerivative5point(H, X, expression);
+    }
+
+    @Benchmark
+    public double secondDerivative() {
+        return DerivationMethods.secondDerivative(H, X, expression);
+    }
+
+    @Benchmark
+    public double exactFirstDerivative() {
+        return DerivationMethods.exactFirstDerivative(X, expression);
+    }
+
+    @Benchmark
+    public double exactSecondDerivative() {
+        return DerivationMethods.exactSecondDerivative(X, expression);
+    }
+
+    @Benchmark
+    public DerivativeGrid derivativeGrid() {
+        return DerivationMethods.derivativeGrid(H, 0, 1, H, expression);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost per evaluation of a compiled expression, point by point, in batches and through the
+ * boxing {@link Parser#getFunction} adapter, for both evaluation modes. Scores are per point.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvaluationBenchmark {
+    private static final int POINTS = 1024;
+
+    @Param({Corpus.POLYNOMIAL, Corpus.PRODUCT, Corpus.GAUSSIAN, Corpus.RATIONAL, Corpus.REPEATED, Corpus.NESTED})
+    public String expression;
+
+    @Param({"INTERPRETED", "GENERATED"})
+    public EvaluationMode mode;
+
+    private Expression compiled;
+    private Function<Double, Double> boxed;
+    private final double[] x = new double[POINTS];
+    private final double[] y = new double[POINTS];
+
+    @Setup
+    public void setUp() {
+        compiled = Parser.compile(expression, mode);
+        boxed = Parser.getFunction(expression);
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = 0.1 + 2.0 * i / POINTS;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void pointByPoint(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            blackhole.consume(compiled.applyAsDouble(x[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] batch() {
+        compiled.applyAll(x, y, POINTS);
+        return y;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void boxedAdapter(Blackhole blackhole) {
+        for (int i = 0; i < POINTS; i++) {
+            blackhole.consume(boxed.apply(x[i]));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the fixed-step rules over [0, 2] at several step sizes. The rules are called with
+ * the source text, as the application does, so every call includes the expression cache lookup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntegrationBenchmark {
+    private static final double START = 0;
+    private static final double END = 2;
+
+    @Param({Corpus.PRODUCT, Corpus.NESTED})
+    public String expression;
+
+    @Param({"1e-2", "1e-4", "1e-6"})
+    public double h;
+
+    @Benchmark
+    public double simpson() {
+        return IntegrationMethods.SimpsonRule(h, START, END, expression);
+    }
+
+    @Benchmark
+    public double trapezoidal() {
+        return IntegrationMethods.TrapezoidalRule(h, START, END, expression);
+    }
+
+    @Benchmark
+    public double midpoint() {
+        return IntegrationMethods.MidpointRule(h, START, END, expression);
+    }
+
+    @Benchmark
+    public double parallelSimpson() {
+        return IntegrationMethods.ParallelSimpsonRule(h, START, END, expression);
+    }
+
+    @Benchmark
+    public double compositeGaussLegendre() {
+        return IntegrationMethods.CompositeGaussLegendreRule(h, 5, START, END, expression);
+    }
+
+    @Benchmark
+    public RuleComparison compareRules() {
+        return IntegrationMethods.CompareRules(h, START, END, expression);
+    }
+}
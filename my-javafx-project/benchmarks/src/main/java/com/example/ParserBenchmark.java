@@ -0,0 +1,45 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning source text into something that can be evaluated: parsing alone, parsing with
+ * optimization, and a lookup in the shared expression cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({Corpus.POLYNOMIAL, Corpus.PRODUCT, Corpus.GAUSSIAN, Corpus.RATIONAL, Corpus.REPEATED, Corpus.NESTED})
+    public String expression;
+
+    @Benchmark
+    public Expression parse() {
+        return Parser.compile(expression, "x");
+    }
+
+    @Benchmark
+    public Expression parseAndOptimize() {
+        return Parser.compile(expression, EvaluationMode.INTERPRETED);
+    }
+
+    @Benchmark
+    public Expression cacheLookup() {
+        return ExpressionCache.shared().get(expression);
+    }
+}
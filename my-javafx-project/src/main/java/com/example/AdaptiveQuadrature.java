@@ -0,0 +1,246 @@
+package com.example;
+
+import java.util.PriorityQueue;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Globally adaptive quadrature. The interval is kept as a set of segments, each with its own
+ * value and error estimate, and the segment with the largest error is split in two until the
+ * total error meets the tolerance or the evaluation budget is spent.
+ * Smooth parts of the integrand are therefore sampled only as finely as the tolerance needs.
+ */
+final class AdaptiveQuadrature {
+
+    /** Gauss-Kronrod abscissae on [-1, 1]; odd indices are shared with the 7-point Gauss rule. */
+    private static final double[] XGK = {
+        0.991455371120812639206854697526329,
+        0.949107912342758524526189684047851,
+        0.864864423359769072789712788640926,
+        0.741531185599394439863864773280788,
+        0.586087235467691130294144845693013,
+        0.405845151377397166906606412076961,
+        0.207784955007898467600689403773245,
+        0.000000000000000000000000000000000
+    };
+
+    /** Weights of the 15-point Kronrod rule. */
+    private static final double[] WGK = {
+        0.022935322010529224963732008058970,
+        0.063092092629978553290700663189204,
+        0.104790010322250183839876322541518,
+        0.140653259715525918745189590510238,
+        0.169004726639267902826583426598550,
+        0.190350578064785409913256402421014,
+        0.204432940075298892414161999234649,
+        0.209482141084727828012999174891714
+    };
+
+    /** Weights of the 7-point Gauss rule, for XGK[1], XGK[3], XGK[5] and the centre. */
+    private static final double[] WG = {
+        0.129484966168869693270611432679082,
+        0.279705391489276667901467771423780,
+        0.381830050505118944950369775488975,
+        0.417959183673469387755102040816327
+    };
+
+    private static final double EPSILON = Math.ulp(1.0);
+
+    private AdaptiveQuadrature() {
+    }
+
+    /**
+    * Integrates with adaptive Simpson's rule. Each segment compares Simpson's rule on the whole
+    * segment with Simpson's rule on its two halves; the difference divided by 15 estimates the error
+    * and is also added to the value as a Richardson correction.
+    *
+    * @Returns the value, error estimate and number of evaluations
+    */
+    static IntegrationResult simpson(DoubleUnaryOperator f, double a, double b, double absoluteTolerance, double relativeTolerance, long maxEvaluations) {
+        double m = 0.5 * (a + b);
+        SimpsonSegment whole = SimpsonSegment.create(f, a, m, b, f.applyAsDouble(a), f.applyAsDouble(m), f.applyAsDouble(b));
+        return integrate(whole, 5, absoluteTolerance, relativeTolerance, maxEvaluations);
+    }
+
+    /**
+    * Integrates with the adaptive 7-point Gauss / 15-point Kronrod pair. The difference between
+    * the two rules on a segment gives its error estimate, scaled as in QUADPACK's QK15.
+    *
+    * @Returns the value, error estimate and number of evaluations
+    */
+    static IntegrationResult gaussKronrod(DoubleUnaryOperator f, double a, double b, double absoluteTolerance, double relativeTolerance, long maxEvaluations) {
+        return integrate(KronrodSegment.create(f, a, b), 15, absoluteTolerance, relativeTolerance, maxEvaluations);
+    }
+
+    private static IntegrationResult integrate(Segment first, long evaluations, double absoluteTolerance, double relativeTolerance, long maxEvaluations) {
+        if (absoluteTolerance < 0 || relativeTolerance < 0 || (absoluteTolerance == 0 && relativeTolerance == 0)) {
+            throw new IllegalArgumentException("at least one tolerance must be positive and none negative");
+        }
+        PriorityQueue<Segment> queue = new PriorityQueue<>((s, t) -> Double.compare(t.error, s.error));
+        queue.add(first);
+        double value = first.value;
+        double error = first.error;
+        double finished = 0;
+        double finishedError = 0;
+        // A NaN or infinite estimate, such as from ln(x) sampled at 0, cannot recover by splitting,
+        // so it ends the loop instead of spending the whole budget
+        while (!(error <= Math.max(absoluteTolerance, relativeTolerance * Math.abs(value))) && Double.isFinite(error)
+                && !queue.isEmpty() && evaluations + first.splitCost() <= maxEvaluations) {
+            Segment worst = queue.poll();
+            if (!worst.canSplit()) {
+                // Too narrow to split further in double precision; keep its contribution as is
+                finished += worst.value;
+                finishedError += worst.error;
+                continue;
+            }
+            Segment[] halves = worst.split();
+            evaluations += first.splitCost();
+            queue.add(halves[0]);
+            queue.add(halves[1]);
+            value += halves[0].value + halves[1].value - worst.value;
+            error += halves[0].error + halves[1].error - worst.error;
+        }
+        // Re-add everything so the running updates do not leave rounding error behind
+        GridSum.CompensatedSum totalValue = new GridSum.CompensatedSum();
+        totalValue.add(finished);
+        double totalError = finishedError;
+        for (Segment segment : queue) {
+            totalValue.add(segment.value);
+            totalError += segment.error;
+        }
+        value = totalValue.value();
+        boolean converged = totalError <= Math.max(absoluteTolerance, relativeTolerance * Math.abs(value));
+        return new IntegrationResult(value, totalError, evaluations, converged);
+    }
+
+    private abstract static class Segment {
+        final double a;
+        final double b;
+        double value;
+        double error;
+
+        Segment(double a, double b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        boolean canSplit() {
+            double m = 0.5 * (a + b);
+            return m != a && m != b && Math.abs(b - a) > 4 * EPSILON * Math.max(Math.abs(a), Math.abs(b));
+        }
+
+        abstract int splitCost();
+
+        abstract Segment[] split();
+    }
+
+    private static final class SimpsonSegment extends Segment {
+        final DoubleUnaryOperator f;
+        final double fa;
+        final double flm;
+        final double fm;
+        final double frm;
+        final double fb;
+
+        private SimpsonSegment(DoubleUnaryOperator f, double a, double b, double fa, double flm, double fm, double frm, double fb) {
+            super(a, b);
+            this.f = f;
+            this.fa = fa;
+            this.flm = flm;
+            this.fm = fm;
+            this.frm = frm;
+            this.fb = fb;
+            double h = b - a;
+            double whole = h / 6 * (fa + 4 * fm + fb);
+            double halves = h / 12 * (fa + 4 * flm + 2 * fm + 4 * frm + fb);
+            this.value = halves + (halves - whole) / 15;
+            this.error = Math.abs(halves - whole) / 15;
+        }
+
+        /** Builds a segment from its end and middle values, evaluating the two quarter points. */
+        static SimpsonSegment create(DoubleUnaryOperator f, double a, double m, double b, double fa, double fm, double fb) {
+            ProgressMonitor.checkpoint(ProgressMonitor.current(), 2);
+            double flm = f.applyAsDouble(0.5 * (a + m));
+            double frm = f.applyAsDouble(0.5 * (m + b));
+            return new SimpsonSegment(f, a, b, fa, flm, fm, frm, fb);
+        }
+
+        @Override
+        int splitCost() {
+            return 4;
+        }
+
+        @Override
+        Segment[] split() {
+            double m = 0.5 * (a + b);
+            return new Segment[] {
+                create(f, a, 0.5 * (a + m), m, fa, flm, fm),
+                create(f, m, 0.5 * (m + b), b, fm, frm, fb)
+            };
+        }
+    }
+
+    private static final class KronrodSegment extends Segment {
+        final DoubleUnaryOperator f;
+
+        private KronrodSegment(DoubleUnaryOperator f, double a, double b) {
+            super(a, b);
+            this.f = f;
+        }
+
+        static KronrodSegment create(DoubleUnaryOperator f, double a, double b) {
+            KronrodSegment segment = new KronrodSegment(f, a, b);
+            double centre = 0.5 * (a + b);
+            double halfLength = 0.5 * (b - a);
+            double[] x = new double[15];
+            double[] y = new double[15];
+            for (int j = 0; j < 7; j++) {
+                x[2 * j] = centre - halfLength * XGK[j];
+                x[2 * j + 1] = centre + halfLength * XGK[j];
+            }
+            x[14] = centre;
+            GridSum.evaluate(f, x, y, 15);
+
+            double fc = y[14];
+            double resultGauss = fc * WG[3];
+            double resultKronrod = fc * WGK[7];
+            double resultAbs = Math.abs(resultKronrod);
+            for (int j = 0; j < 7; j++) {
+                double pair = y[2 * j] + y[2 * j + 1];
+                resultKronrod += WGK[j] * pair;
+                resultAbs += WGK[j] * (Math.abs(y[2 * j]) + Math.abs(y[2 * j + 1]));
+                if (j % 2 == 1) {
+                    resultGauss += WG[j / 2] * pair;
+                }
+            }
+            double mean = resultKronrod * 0.5;
+            double resultAsc = WGK[7] * Math.abs(fc - mean);
+            for (int j = 0; j < 7; j++) {
+                resultAsc += WGK[j] * (Math.abs(y[2 * j] - mean) + Math.abs(y[2 * j + 1] - mean));
+            }
+            double absHalfLength = Math.abs(halfLength);
+            resultAbs *= absHalfLength;
+            resultAsc *= absHalfLength;
+            double error = Math.abs((resultKronrod - resultGauss) * halfLength);
+            if (resultAsc != 0 && error != 0) {
+                error = resultAsc * Math.min(1, Math.pow(200 * error / resultAsc, 1.5));
+            }
+            if (resultAbs > Double.MIN_NORMAL / (50 * EPSILON)) {
+                error = Math.max(50 * EPSILON * resultAbs, error);
+            }
+            segment.value = resultKronrod * halfLength;
+            segment.error = error;
+            return segment;
+        }
+
+        @Override
+        int splitCost() {
+            return 30;
+        }
+
+        @Override
+        Segment[] split() {
+            double m = 0.5 * (a + b);
+            return new Segment[] { create(f, a, m), create(f, m, b) };
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless entry point that runs a file of jobs and writes one result per job, in input order.
+ * <pre>
+ * java -cp my-javafx-project.jar com.example.BatchMain [--format csv|jsonl] [--threads n] [--cache file [--cache-size mib]] jobs.csv [results.csv]
+ * </pre>
+ * Use {@code -} for standard input or output; results go to standard output when no output file is given.
+ * The format follows the file extension unless {@code --format} is given, see {@link JobFormat}.
+ * With {@code --cache}, results are kept in a {@link ResultCache} file, and jobs whose results an earlier
+ * run stored there are not computed again.
+ * <p>
+ * Lines are read into chunks, each chunk is parsed and computed on a worker pool, and a writer
+ * thread takes the results in submission order. At most a fixed number of chunks are in flight,
+ * so reading waits for the slowest job and memory stays flat however long the file is.
+ * A job that fails produces an error line; the batch continues.
+ */
+public class BatchMain {
+    /** Lines per chunk, large enough that scheduling costs little next to parsing and computing. */
+    static final int CHUNK_SIZE = 256;
+    /** Chunks in flight per worker thread. */
+    static final int CHUNKS_PER_THREAD = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+
+    public static void main(String[] args) throws InterruptedException {
+        String input = null;
+        String output = "-";
+        JobFormat format = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String cacheFile = null;
+        long cacheSize = ResultCache.DEFAULT_SIZE;
+        int positional = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--format") && i + 1 < args.length) {
+                    format = JobFormat.fromName(args[++i]);
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    cacheFile = args[++i];
+                } else if (args[i].equals("--cache-size") && i + 1 < args.length) {
+                    long mebibytes = Long.parseLong(args[++i]);
+                    if (mebibytes < 1 || mebibytes > 1024) {
+                        throw new IllegalArgumentException("--cache-size must be between 1 and 1024");
+                    }
+                    cacheSize = mebibytes << 20;
+                } else if (positional == 0) {
+                    input = args[i];
+                    positional++;
+                } else if (positional == 1) {
+                    output = args[i];
+                    positional++;
+                } else {
+                    throw new IllegalArgumentException("unexpected argument " + args[i]);
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("no job file given");
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("--threads must be at least 1");
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.err.println("usage: BatchMain [--format csv|jsonl] [--threads n] [--cache file [--cache-size mib]] jobs [results]");
+            System.exit(2);
+            return;
+        }
+        if (format == null) {
+            format = JobFormat.forFileName(input.equals("-") ? output : input);
+        }
+
+        long start = System.nanoTime();
+        int status = 0;
+        ResultCache cache = null;
+        try (BufferedReader reader = openReader(input); Writer writer = openWriter(output)) {
+            if (cacheFile != null) {
+                cache = ResultCache.open(Paths.get(cacheFile), cacheSize);
+                ResultCache.setShared(cache);
+            }
+            Summary summary = run(reader, writer, format, threads);
+            System.err.printf("%d jobs, %d failed, %.1f s%n", summary.getJobs(), summary.getFailed(), (System.nanoTime() - start) / 1e9);
+            if (cache != null) {
+                System.err.println("Result cache: " + cache);
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            status = 1;
+        } finally {
+            if (cache != null) {
+                ResultCache.setShared(null);
+                try {
+                    cache.close();
+                } catch (IOException ex) {
+                    System.err.println("Error: " + ex.getMessage());
+                }
+            }
+        }
+        if (status != 0) {
+            // Only after the cache above is closed
+            System.exit(status);
+        }
+    }
+
+    /**
+    * Runs every job read from {@code reader} and writes the results to {@code writer}.
+    * Blank lines and lines starting with {@code #} are skipped but still counted for the line numbers.
+    *
+    * @param reader the job lines
+    * @param writer where the result lines go, in the order of the jobs
+    * @param format the format of jobs and results
+    * @param threads the number of worker threads
+    * @Returns the number of jobs run and failed
+    * @Throws IOException if reading or writing fails
+    */
+    static Summary run(BufferedReader reader, Writer writer, JobFormat format, int threads) throws IOException, InterruptedException {
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(CHUNKS_PER_THREAD * threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Summary summary = new Summary();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread writerThread = new Thread(() -> write(pending, writer, format, failure), "batch-writer");
+        writerThread.start();
+        try {
+            String[] columns = JobFormat.DEFAULT_COLUMNS;
+            long lineNumber = 0;
+            String[] chunk = new String[CHUNK_SIZE];
+            int size = 0;
+            long firstLine = 1;
+            String line;
+            while (failure.get() == null && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1) {
+                    String[] header = header(format, line);
+                    if (header != null) {
+                        columns = header;
+                        continue;
+                    }
+                }
+                if (size == 0) {
+                    firstLine = lineNumber;
+                }
+                chunk[size++] = line;
+                if (size == CHUNK_SIZE) {
+                    submit(workers, pending, format, columns, chunk, size, firstLine, summary);
+                    chunk = new String[CHUNK_SIZE];
+                    size = 0;
+                }
+            }
+            if (size > 0 && failure.get() == null) {
+                submit(workers, pending, format, columns, chunk, size, firstLine, summary);
+            }
+        } finally {
+            pending.put(END);
+            writerThread.join();
+            workers.shutdownNow();
+        }
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error != null) {
+            throw new IOException("batch failed: " + error, error);
+        }
+        return summary;
+    }
+
+    private static String[] header(JobFormat format, String line) {
+        try {
+            return format.columns(line);
+        } catch (IllegalArgumentException ex) {
+            // Not a header; the line is reported as a malformed job
+            return null;
+        }
+    }
+
+    private static void submit(ExecutorService workers, BlockingQueue<Future<String>> pending, JobFormat format, String[] columns,
+            String[] lines, int size, long firstLine, Summary summary) throws InterruptedException {
+        // Blocks while the writer is CHUNKS_PER_THREAD chunks per thread behind
+        pending.put(workers.submit(() -> compute(format, columns, lines, size, firstLine, summary)));
+    }
+
+    /**
+    * Parses and runs the jobs of one chunk.
+    *
+    * @Returns the result lines of the chunk
+    */
+    static String compute(JobFormat format, String[] columns, String[] lines, int size, long firstLine, Summary summary) {
+        StringBuilder results = new StringBuilder(size * 32);
+        for (int i = 0; i < size; i++) {
+            String text = lines[i];
+            long line = firstLine + i;
+            if (text.trim().isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+            String result;
+            try {
+                result = format.result(line, format.parse(line, text, columns).run());
+            } catch (IllegalArgumentException | ArithmeticException ex) {
+                result = format.error(line, String.valueOf(ex.getMessage()));
+                summary.failed.increment();
+            } catch (RuntimeException ex) {
+                // A bug in one job must not abort the batch
+                result = format.error(line, String.valueOf(ex));
+                summary.failed.increment();
+            } catch (StackOverflowError ex) {
+                result = format.error(line, "expression nested too deeply");
+                summary.failed.increment();
+            }
+            summary.jobs.increment();
+            results.append(result).append('\n');
+        }
+        return results.toString();
+    }
+
+    private static void write(BlockingQueue<Future<String>> pending, Writer writer, JobFormat format, AtomicReference<Throwable> failure) {
+        try {
+            String header = format.header();
+            if (header != null) {
+                writer.write(header);
+                writer.write('\n');
+            }
+            for (Future<String> next = pending.take(); next != END; next = pending.take()) {
+                writer.write(next.get());
+            }
+            writer.flush();
+        } catch (IOException | RuntimeException ex) {
+            failure.set(ex);
+        } catch (ExecutionException ex) {
+            failure.set(ex.getCause());
+        } catch (InterruptedException ex) {
+            failure.set(ex);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (failure.get() != null) {
+            // Keep taking chunks so the reader is not blocked before it sees the failure
+            try {
+                while (pending.take() != END) {
+                    continue;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static BufferedReader openReader(String input) throws IOException {
+        if (input.equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        Path path = Paths.get(input);
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static Writer openWriter(String output) throws IOException {
+        if (output.equals("-")) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(output)), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Counts of the jobs of a batch, updated by the worker threads.
+     */
+    static final class Summary {
+        final LongAdder jobs = new LongAdder();
+        final LongAdder failed = new LongAdder();
+
+        long getJobs() {
+            return jobs.sum();
+        }
+
+        long getFailed() {
+            return failed.sum();
+        }
+    }
+}
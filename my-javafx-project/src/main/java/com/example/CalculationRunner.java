@@ -0,0 +1,109 @@
+package com.example;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javafx.concurrent.Task;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+
+/**
+ * Runs the calculations of one tab on an executor, one at a time: starting a calculation
+ * cancels the one still running, and only the latest calculation may update the tab.
+ * All methods are called on the JavaFX Application Thread.
+ */
+final class CalculationRunner {
+    final ProgressBar progressBar = new ProgressBar(0);
+    final Button cancelButton = new Button("Cancel");
+    private final Executor executor;
+    private Calculation<?> current;
+
+    CalculationRunner(Executor executor) {
+        this.executor = executor;
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(e -> cancel());
+    }
+
+    <T> void start(Supplier<T> computation, long expectedEvaluations, Consumer<T> onResult, Label resultLabel) {
+        cancel();
+        Calculation<T> calculation = new Calculation<>(computation, expectedEvaluations);
+        current = calculation;
+        calculation.setOnSucceeded(e -> {
+            if (current == calculation) {
+                finish(1);
+                onResult.accept(calculation.getValue());
+            }
+        });
+        calculation.setOnFailed(e -> {
+            if (current == calculation) {
+                finish(0);
+                resultLabel.setText(describe(calculation.getException()));
+            }
+        });
+        calculation.setOnCancelled(e -> {
+            if (current == calculation) {
+                finish(0);
+                resultLabel.setText("Cancelled");
+            }
+        });
+        progressBar.progressProperty().bind(calculation.progressProperty());
+        cancelButton.setDisable(false);
+        resultLabel.setText("Calculating...");
+        executor.execute(calculation);
+    }
+
+    void cancel() {
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private void finish(double progress) {
+        current = null;
+        progressBar.progressProperty().unbind();
+        progressBar.setProgress(progress);
+        cancelButton.setDisable(true);
+    }
+
+    private String describe(Throwable error) {
+        if (error instanceof IllegalArgumentException || error instanceof ArithmeticException) {
+            return "Error: " + error.getMessage();
+        }
+        return "Error: " + error;
+    }
+
+    /**
+     * A calculation whose function evaluations are reported as task progress.
+     * Cancelling the task also cancels its monitor, which stops the evaluation loop.
+     */
+    private static final class Calculation<T> extends Task<T> {
+        private final Supplier<T> computation;
+        private final long expectedEvaluations;
+        private final ProgressMonitor monitor = new ProgressMonitor() {
+            @Override
+            protected void progressed(long evaluations) {
+                if (expectedEvaluations > 0) {
+                    updateProgress(Math.min(evaluations, expectedEvaluations), expectedEvaluations);
+                }
+            }
+        };
+
+        Calculation(Supplier<T> computation, long expectedEvaluations) {
+            this.computation = computation;
+            this.expectedEvaluations = expectedEvaluations;
+        }
+
+        @Override
+        protected T call() {
+            return monitor.run(computation);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            monitor.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
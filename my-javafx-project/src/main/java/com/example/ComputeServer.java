@@ -0,0 +1,304 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP endpoint for the integration and derivation methods, for other processes on the same machine.
+ * The server only listens on the loopback interface.
+ * <ul>
+ * <li>{@code GET /compute?expression=sin(x)&method=simpson&h=0.01&a=0&b=1}, or a POST of the same fields
+ * as a flat JSON object, answers {@code {"value":0.4596...}} or a 400 with {@code {"error":"..."}}.
+ * The fields and method names are those of a {@link Job}.</li>
+ * <li>{@code POST /batch} takes many jobs in one call, as JSON Lines or, with a {@code text/csv} content type,
+ * as CSV, and answers with one result line per job in the same order, as {@link BatchMain} writes them.</li>
+ * <li>{@code GET /stats} answers the request count and latency percentiles of each endpoint in microseconds,
+ * and the hit rates of the expression cache and, when results are cached with {@code --cache file}, of the
+ * {@link ResultCache}.</li>
+ * </ul>
+ * Each request runs on its own virtual thread where the JDK has them, otherwise on a cached thread pool.
+ * Compiled expressions are shared through {@link ExpressionCache}, which also coalesces concurrent
+ * requests for an expression that is still being compiled.
+ * <p>
+ * The JDK server writes the headers and the body of a response separately; without TCP_NODELAY the body
+ * waits for the delayed ACK of the headers, about 40 ms on a kept-alive connection. {@link #main(String[])}
+ * sets {@code -Dsun.net.httpserver.nodelay=true} unless it is given; a program that embeds the server
+ * should pass that flag at launch, since the JDK reads it once.
+ */
+public class ComputeServer {
+    static final int DEFAULT_PORT = 8089;
+    private static final int BACKLOG = 1024;
+    private static final String JSON = "application/json";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyHistogram computeLatency = new LatencyHistogram();
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+
+    /**
+    * Creates a server on the loopback interface. It does not accept requests until {@link #start()}.
+    *
+    * @param port the port, or 0 for any free port
+    * @Throws IOException if the port cannot be bound
+    */
+    public ComputeServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/compute", timed(computeLatency, this::compute));
+        server.createContext("/batch", timed(batchLatency, this::batch));
+        server.createContext("/stats", this::stats);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Before the first server is created, which is when the JDK reads it
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = DEFAULT_PORT;
+        String cacheFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheFile = args[++i];
+            } else {
+                System.err.println("usage: ComputeServer [--port n] [--cache file]");
+                System.exit(2);
+            }
+        }
+        if (cacheFile != null) {
+            ResultCache cache = ResultCache.open(Paths.get(cacheFile), ResultCache.DEFAULT_SIZE);
+            ResultCache.setShared(cache);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    cache.close();
+                } catch (IOException ex) {
+                    System.err.println("Error: " + ex.getMessage());
+                }
+            }));
+        }
+        ComputeServer server = new ComputeServer(port);
+        server.start();
+        System.err.println("Listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+    * Stops accepting requests, waits up to a second for running ones and releases the threads.
+    */
+    public void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void compute(HttpExchange exchange) throws IOException {
+        Map<String, String> fields;
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET")) {
+            fields = queryFields(exchange.getRequestURI().getRawQuery());
+        } else if (method.equals("POST")) {
+            fields = FlatJson.parse(readBody(exchange));
+        } else {
+            send(exchange, 405, JSON, "{\"error\":\"use GET or POST\"}");
+            return;
+        }
+        double value;
+        try {
+            value = Job.of(0, fields).run();
+        } catch (ArithmeticException ex) {
+            send(exchange, 400, JSON, "{\"error\":" + FlatJson.quote(String.valueOf(ex.getMessage())) + "}");
+            return;
+        }
+        send(exchange, 200, JSON, "{\"value\":" + FlatJson.number(value) + "}");
+    }
+
+    private void batch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, JSON, "{\"error\":\"use POST\"}");
+            return;
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        JobFormat format = contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv") ? JobFormat.CSV : JobFormat.JSONL;
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        String[] columns = JobFormat.DEFAULT_COLUMNS;
+        int first = 0;
+        if (!lines.isEmpty()) {
+            String[] header = headerOf(format, lines.get(0));
+            if (header != null) {
+                columns = header;
+                first = 1;
+            }
+        }
+
+        // Chunks of a large batch run in parallel on the request executor, not the pool the parallel rules
+        // fork onto; a small one stays on the request thread
+        BatchMain.Summary summary = new BatchMain.Summary();
+        List<CompletableFuture<String>> chunks = new ArrayList<>();
+        for (int start = first; start < lines.size(); start += BatchMain.CHUNK_SIZE) {
+            String[] chunk = lines.subList(start, Math.min(start + BatchMain.CHUNK_SIZE, lines.size())).toArray(new String[0]);
+            long firstLine = start + 1;
+            String[] chunkColumns = columns;
+            if (lines.size() - first <= BatchMain.CHUNK_SIZE) {
+                chunks.add(CompletableFuture.completedFuture(BatchMain.compute(format, chunkColumns, chunk, chunk.length, firstLine, summary)));
+            } else {
+                chunks.add(CompletableFuture.supplyAsync(() -> BatchMain.compute(format, chunkColumns, chunk, chunk.length, firstLine, summary), executor));
+            }
+        }
+        StringBuilder results = new StringBuilder();
+        String header = format.header();
+        if (header != null) {
+            results.append(header).append('\n');
+        }
+        for (CompletableFuture<String> chunk : chunks) {
+            results.append(chunk.join());
+        }
+        send(exchange, 200, format == JobFormat.CSV ? "text/csv" : "application/x-ndjson", results.toString());
+    }
+
+    private void stats(HttpExchange exchange) throws IOException {
+        ExpressionCache cache = ExpressionCache.shared();
+        String body = "{\"compute\":" + latencies(computeLatency)
+                + ",\"batch\":" + latencies(batchLatency)
+                + ",\"cache\":{\"hits\":" + cache.getHits()
+                + ",\"misses\":" + cache.getMisses()
+                + ",\"coalesced\":" + cache.getCoalesced()
+                + ",\"hitRate\":" + FlatJson.number(cache.getHitRate()) + "}"
+                + resultCacheStats() + "}";
+        send(exchange, 200, JSON, body);
+    }
+
+    private static String resultCacheStats() {
+        ResultCache results = ResultCache.shared();
+        if (results == null) {
+            return "";
+        }
+        return ",\"results\":{\"size\":" + results.size()
+                + ",\"hits\":" + results.getHits()
+                + ",\"misses\":" + results.getMisses()
+                + ",\"evictions\":" + results.getEvictions()
+                + ",\"hitRate\":" + FlatJson.number(results.getHitRate()) + "}";
+    }
+
+    private static String latencies(LatencyHistogram histogram) {
+        return "{\"count\":" + histogram.getCount()
+                + ",\"p50\":" + micros(histogram.getPercentile(50))
+                + ",\"p90\":" + micros(histogram.getPercentile(90))
+                + ",\"p99\":" + micros(histogram.getPercentile(99))
+                + ",\"p999\":" + micros(histogram.getPercentile(99.9))
+                + ",\"max\":" + micros(histogram.getMax()) + "}";
+    }
+
+    private static String micros(long nanos) {
+        return FlatJson.number(nanos / 1000.0);
+    }
+
+    /**
+    * Wraps a handler so that malformed requests, including too deeply nested expressions, get a 400 and every
+    * request is timed, including failed ones.
+    */
+    private static HttpHandler timed(LatencyHistogram latency, HttpHandler handler) {
+        return exchange -> {
+            long start = System.nanoTime();
+            try {
+                handler.handle(exchange);
+            } catch (IllegalArgumentException ex) {
+                send(exchange, 400, JSON, "{\"error\":" + FlatJson.quote(String.valueOf(ex.getMessage())) + "}");
+            } catch (RuntimeException ex) {
+                send(exchange, 500, JSON, "{\"error\":" + FlatJson.quote(String.valueOf(ex)) + "}");
+            } catch (StackOverflowError ex) {
+                // From the recursive parser, as in BatchMain
+                send(exchange, 400, JSON, "{\"error\":\"expression nested too deeply\"}");
+            } finally {
+                latency.record(System.nanoTime() - start);
+                exchange.close();
+            }
+        };
+    }
+
+    private static String[] headerOf(JobFormat format, String line) {
+        try {
+            return format.columns(line);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> queryFields(String query) throws UnsupportedEncodingException {
+        Map<String, String> fields = new HashMap<>();
+        if (query == null) {
+            return fields;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                fields.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return fields;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+    * Returns an executor that starts a virtual thread per request on JDK 21 and later, and a cached pool
+    * of daemon threads on older JDKs.
+    */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "compute-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Integration over boxes [a_1, b_1] x ... x [a_d, b_d].
+ * <p>
+ * The nested rules apply a one-dimensional rule along every axis, which is accurate for smooth
+ * integrands but needs n^d evaluations, so they are limited to {@link #MAX_NESTED_DIMENSIONS} dimensions.
+ * Quasi-Monte Carlo integration samples a randomized low-discrepancy sequence instead, whose cost does not
+ * grow with the dimension. Independent replicates of the sequence, each with its own random shift, give
+ * the error estimate.
+ * <p>
+ * Both split the work into a fixed set of chunks on a fork/join pool and combine the chunk sums in a
+ * fixed order, so results are the same on every run whatever the number of threads.
+ */
+final class Cubature {
+    static final int MAX_NESTED_DIMENSIONS = 3;
+    /** The most evaluations a nested rule may make, about 10^12. */
+    static final long MAX_NESTED_POINTS = 1L << 40;
+    /** The most nodes along one axis, about 4 million, which take 64 MiB with their weights. */
+    static final int MAX_AXIS_NODES = 1 << 22;
+    /** Randomized replicates of the quasi-random sequence. */
+    static final int REPLICATES = 16;
+    /** Points per replicate in the first round; every later round doubles them. */
+    static final int INITIAL_POINTS = 1024;
+    /** The seed of the random shifts, fixed so that results are reproducible. */
+    static final long SEED = 0x5DEECE66DL;
+
+    private static final String[] VARIABLES = {"x", "y", "z", "u", "v", "w"};
+
+    private Cubature() {
+    }
+
+    /**
+    * Returns the variable names of an integrand in the given number of dimensions:
+    * x, y, z, u, v, w up to six dimensions and x1, x2, ... beyond.
+    */
+    static String[] variableNames(int dimensions) {
+        if (dimensions <= VARIABLES.length) {
+            String[] names = new String[dimensions];
+            System.arraycopy(VARIABLES, 0, names, 0, dimensions);
+            return names;
+        }
+        String[] names = new String[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            names[i] = "x" + (i + 1);
+        }
+        return names;
+    }
+
+    /**
+    * Integrates with a composite Gauss-Legendre rule of the given order along every axis,
+    * using panels of width h.
+    *
+    * @Returns the approximate integral
+    * @Throws IllegalArgumentException if the box is invalid or has more than {@link #MAX_NESTED_DIMENSIONS} dimensions
+    */
+    static double nestedGaussLegendre(ToDoubleFunction<double[]> f, double[] lower, double[] upper, double h, int order, ForkJoinPool pool) {
+        checkNested(lower, upper);
+        nestedEvaluations(lower, upper, h, order, false);
+        GaussLegendre rule = GaussLegendre.of(order);
+        double[][] nodes = new double[lower.length][];
+        double[][] weights = new double[lower.length][];
+        for (int d = 0; d < lower.length; d++) {
+            int panels = GridSum.stepCount(h, lower[d], upper[d]);
+            double width = (upper[d] - lower[d]) / panels;
+            nodes[d] = new double[panels * order];
+            weights[d] = new double[panels * order];
+            for (int p = 0; p < panels; p++) {
+                double middle = lower[d] + (p + 0.5) * width;
+                for (int i = 0; i < order; i++) {
+                    nodes[d][p * order + i] = middle + width / 2 * rule.nodes[i];
+                    weights[d][p * order + i] = width / 2 * rule.weights[i];
+                }
+            }
+        }
+        return tensorSum(f, nodes, weights, pool);
+    }
+
+    /**
+    * Integrates with the composite Simpson's rule along every axis. The step count of each axis
+    * is rounded up to an even number.
+    *
+    * @Returns the approximate integral
+    * @Throws IllegalArgumentException if the box is invalid or has more than {@link #MAX_NESTED_DIMENSIONS} dimensions
+    */
+    static double nestedSimpson(ToDoubleFunction<double[]> f, double[] lower, double[] upper, double h, ForkJoinPool pool) {
+        checkNested(lower, upper);
+        nestedEvaluations(lower, upper, h, 0, true);
+        double[][] nodes = new double[lower.length][];
+        double[][] weights = new double[lower.length][];
+        for (int d = 0; d < lower.length; d++) {
+            int n = GridSum.stepCount(h, lower[d], upper[d]);
+            if (n % 2 != 0) {
+                n++;
+            }
+            double step = (upper[d] - lower[d]) / n;
+            nodes[d] = new double[n + 1];
+            weights[d] = new double[n + 1];
+            for (int i = 0; i <= n; i++) {
+                nodes[d][i] = lower[d] + i * step;
+                weights[d][i] = step / 3 * (i == 0 || i == n ? 1 : i % 2 == 1 ? 4 : 2);
+            }
+        }
+        return tensorSum(f, nodes, weights, pool);
+    }
+
+    /**
+    * Counts the evaluations a nested rule makes, the product of the node counts of all axes.
+    * The nested rules call it before they allocate the nodes of each axis.
+    *
+    * @param nodesPerPanel the order of the Gauss-Legendre rule, ignored for Simpson's rule
+    * @Returns the number of evaluations
+    * @Throws IllegalArgumentException if it exceeds {@link #MAX_NESTED_POINTS}, or an axis has more than
+    * {@link #MAX_AXIS_NODES} nodes
+    */
+    static long nestedEvaluations(double[] lower, double[] upper, double h, int nodesPerPanel, boolean simpson) {
+        double total = 1;
+        for (int d = 0; d < lower.length; d++) {
+            int n = GridSum.stepCount(h, lower[d], upper[d]);
+            long nodes = simpson ? n + n % 2 + 1L : (long) n * nodesPerPanel;
+            if (nodes > MAX_AXIS_NODES) {
+                throw new IllegalArgumentException("step size too small: more than " + MAX_AXIS_NODES + " nodes along an axis");
+            }
+            total *= nodes;
+        }
+        if (total > MAX_NESTED_POINTS) {
+            throw new IllegalArgumentException("step size too small for the box");
+        }
+        return (long) total;
+    }
+
+    private static void checkNested(double[] lower, double[] upper) {
+        checkBox(lower, upper);
+        if (lower.length > MAX_NESTED_DIMENSIONS) {
+            throw new IllegalArgumentException("nested rules support at most " + MAX_NESTED_DIMENSIONS
+                    + " dimensions, use quasi-Monte Carlo integration for more");
+        }
+    }
+
+    static void checkBox(double[] lower, double[] upper) {
+        if (lower.length != upper.length) {
+            throw new IllegalArgumentException("lower and upper bounds differ in dimension");
+        }
+        if (lower.length == 0) {
+            throw new IllegalArgumentException("at least one dimension is required");
+        }
+        for (int d = 0; d < lower.length; d++) {
+            if (!Double.isFinite(lower[d]) || !Double.isFinite(upper[d])) {
+                throw new IllegalArgumentException("bounds must be finite");
+            }
+        }
+    }
+
+    /**
+    * Sums {@code w_1[i_1] * ... * w_d[i_d] * f(x_1[i_1], ..., x_d[i_d])} over the product grid.
+    */
+    private static double tensorSum(ToDoubleFunction<double[]> f, double[][] nodes, double[][] weights, ForkJoinPool pool) {
+        long inner = 1;
+        for (int d = 1; d < nodes.length; d++) {
+            inner *= nodes[d].length;
+        }
+        int rowsPerLeaf = (int) Math.max(1, GridSum.LEAF / inner);
+        return pool.invoke(new TensorTask(f, nodes, weights, 0, nodes[0].length, rowsPerLeaf, ProgressMonitor.current())).value();
+    }
+
+    /**
+    * Integrates with a randomized quasi-Monte Carlo rule. Each round adds as many points to every replicate
+    * as it already has, until the standard error of the replicate means meets
+    * max(absoluteTolerance, relativeTolerance * |I|) or the next round would exceed maxEvaluations.
+    *
+    * @Returns the mean of the replicates, its standard error and the number of evaluations
+    * @Throws IllegalArgumentException if the box is invalid or has more dimensions than the sequence
+    */
+    static IntegrationResult quasiMonteCarlo(QuasiRandomSequence sequence, ToDoubleFunction<double[]> f, double[] lower, double[] upper,
+            double absoluteTolerance, double relativeTolerance, long maxEvaluations, long seed, ForkJoinPool pool) {
+        checkBox(lower, upper);
+        int dimensions = lower.length;
+        if (dimensions > sequence.getMaxDimensions()) {
+            throw new IllegalArgumentException(sequence + " supports at most " + sequence.getMaxDimensions() + " dimensions");
+        }
+        if (maxEvaluations < (long) REPLICATES * INITIAL_POINTS) {
+            throw new IllegalArgumentException("maxEvaluations must be at least " + (long) REPLICATES * INITIAL_POINTS);
+        }
+        double volume = 1;
+        for (int d = 0; d < dimensions; d++) {
+            volume *= upper[d] - lower[d];
+        }
+
+        // Every replicate draws its shift from its own split of the root stream
+        SplittableRandom root = new SplittableRandom(seed);
+        QuasiRandomSequence.Generator[] generators = new QuasiRandomSequence.Generator[REPLICATES];
+        GridSum.CompensatedSum[] sums = new GridSum.CompensatedSum[REPLICATES];
+        for (int r = 0; r < REPLICATES; r++) {
+            generators[r] = sequence.generator(dimensions, root.split());
+            sums[r] = new GridSum.CompensatedSum();
+        }
+
+        ProgressMonitor monitor = ProgressMonitor.current();
+        long points = 0;
+        long next = INITIAL_POINTS;
+        double estimate = 0;
+        double error = Double.POSITIVE_INFINITY;
+        boolean converged = false;
+        while (true) {
+            List<ForkJoinTask<GridSum.CompensatedSum>> tasks = new ArrayList<>();
+            for (int r = 0; r < REPLICATES; r++) {
+                for (long from = points; from < next; from += GridSum.LEAF) {
+                    QuasiRandomSequence.Generator generator = generators[r].copy();
+                    long start = from;
+                    long end = Math.min(next, from + GridSum.LEAF);
+                    tasks.add(pool.submit(() -> pointSum(f, generator, lower, upper, start, end, monitor)));
+                }
+            }
+            // Joined in submission order, so each replicate's sum is built in the same order on every run
+            int task = 0;
+            for (int r = 0; r < REPLICATES; r++) {
+                for (long from = points; from < next; from += GridSum.LEAF) {
+                    sums[r].add(tasks.get(task++).join());
+                }
+            }
+            points = next;
+
+            double mean = 0;
+            double[] means = new double[REPLICATES];
+            for (int r = 0; r < REPLICATES; r++) {
+                means[r] = volume * sums[r].value() / points;
+                mean += means[r];
+            }
+            mean /= REPLICATES;
+            double variance = 0;
+            for (int r = 0; r < REPLICATES; r++) {
+                variance += (means[r] - mean) * (means[r] - mean);
+            }
+            variance /= REPLICATES - 1;
+            estimate = mean;
+            error = Math.sqrt(variance / REPLICATES);
+            if (error <= Math.max(absoluteTolerance, relativeTolerance * Math.abs(estimate))) {
+                converged = true;
+                break;
+            }
+            if (2 * points * REPLICATES > maxEvaluations || 2 * points > 1L << 32) {
+                break;
+            }
+            next = 2 * points;
+        }
+        return new IntegrationResult(estimate, error, points * REPLICATES, converged);
+    }
+
+    private static GridSum.CompensatedSum pointSum(ToDoubleFunction<double[]> f, QuasiRandomSequence.Generator generator,
+            double[] lower, double[] upper, long from, long to, ProgressMonitor monitor) {
+        int dimensions = lower.length;
+        double[] unit = new double[dimensions];
+        double[] point = new double[dimensions];
+        GridSum.CompensatedSum sum = new GridSum.CompensatedSum();
+        generator.seek(from);
+        for (long i = from; i < to; i++) {
+            if ((i - from) % GridSum.BLOCK == 0) {
+                ProgressMonitor.checkpoint(monitor, Math.min(GridSum.BLOCK, to - i));
+            }
+            generator.next(unit);
+            for (int d = 0; d < dimensions; d++) {
+                point[d] = lower[d] + unit[d] * (upper[d] - lower[d]);
+            }
+            sum.add(f.applyAsDouble(point));
+        }
+        return sum;
+    }
+
+    private static final class TensorTask extends RecursiveTask<GridSum.CompensatedSum> {
+        private static final long serialVersionUID = 1L;
+
+        private final ToDoubleFunction<double[]> f;
+        private final double[][] nodes;
+        private final double[][] weights;
+        private final int from;
+        private final int to;
+        private final int rowsPerLeaf;
+        private final ProgressMonitor monitor;
+
+        TensorTask(ToDoubleFunction<double[]> f, double[][] nodes, double[][] weights, int from, int to, int rowsPerLeaf, ProgressMonitor monitor) {
+            this.f = f;
+            this.nodes = nodes;
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+            this.rowsPerLeaf = rowsPerLeaf;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected GridSum.CompensatedSum compute() {
+            if (to - from <= rowsPerLeaf) {
+                return rows();
+            }
+            // Split on multiples of rowsPerLeaf so the chunks only depend on the grid, never on the pool
+            int middle = from + ((to - from) / 2 / rowsPerLeaf) * rowsPerLeaf;
+            if (middle == from) {
+                middle += rowsPerLeaf;
+            }
+            TensorTask left = new TensorTask(f, nodes, weights, from, middle, rowsPerLeaf, monitor);
+            TensorTask right = new TensorTask(f, nodes, weights, middle, to, rowsPerLeaf, monitor);
+            right.fork();
+            GridSum.CompensatedSum result = left.compute();
+            result.add(right.join());
+            return result;
+        }
+
+        /** Sums the rows from..to of the first axis over all nodes of the other axes. */
+        private GridSum.CompensatedSum rows() {
+            int dimensions = nodes.length;
+            double[] point = new double[dimensions];
+            int[] index = new int[dimensions];
+            GridSum.CompensatedSum sum = new GridSum.CompensatedSum();
+            for (int row = from; row < to; row++) {
+                point[0] = nodes[0][row];
+                double rowWeight = weights[0][row];
+                long count = 1;
+                for (int d = 1; d < dimensions; d++) {
+                    count *= nodes[d].length;
+                }
+                ProgressMonitor.checkpoint(monitor, count);
+                for (int d = 1; d < dimensions; d++) {
+                    index[d] = 0;
+                    point[d] = nodes[d][0];
+                }
+                while (true) {
+                    double weight = rowWeight;
+                    for (int d = 1; d < dimensions; d++) {
+                        weight *= weights[d][index[d]];
+                    }
+                    sum.add(weight * f.applyAsDouble(point));
+                    // Advance the inner axes like an odometer, the last axis fastest
+                    int d = dimensions - 1;
+                    while (d > 0 && ++index[d] == nodes[d].length) {
+                        index[d] = 0;
+                        point[d] = nodes[d][0];
+                        d--;
+                    }
+                    if (d == 0) {
+                        break;
+                    }
+                    point[d] = nodes[d][index[d]];
+                }
+            }
+            return sum;
+        }
+    }
+}
@@ -1,22 +1,86 @@
 package com.example;
 
-import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
 
 public class DerivationMethods {
     public static double firstDerivative(double h, double x, String function) {
+        return firstDerivative(h, x, ExpressionCache.shared().get(function));
+    }
+
+    public static double firstDerivative(double h, double x, DoubleUnaryOperator f) {
+        Metrics.DerivativeEvent event = Metrics.beginDerivative();
         //3 point center difference
-        Function<Double, Double> parsedFunction = Parser.getFunction(function);
-        return (parsedFunction.apply(x + h) - parsedFunction.apply(x - h)) / (2 * h);
+        double result = (f.applyAsDouble(x + h) - f.applyAsDouble(x - h)) / (2 * h);
+        Metrics.end(event, "first-derivative", h, x, 2);
+        return result;
     }
 
     public static double firstDerivative5point(double h, double x, String function) {
+        return firstDerivative5point(h, x, ExpressionCache.shared().get(function));
+    }
+
+    public static double firstDerivative5point(double h, double x, DoubleUnaryOperator f) {
+        Metrics.DerivativeEvent event = Metrics.beginDerivative();
         //5 point center difference
-        Function<Double, Double> parsedFunction = Parser.getFunction(function);
-        return (-parsedFunction.apply(x + 2 * h) + 8 * parsedFunction.apply(x + h) - 8 * parsedFunction.apply(x - h) + parsedFunction.apply(x - 2 * h)) / (12 * h);
+        double result = (-f.applyAsDouble(x + 2 * h) + 8 * f.applyAsDouble(x + h) - 8 * f.applyAsDouble(x - h) + f.applyAsDouble(x - 2 * h)) / (12 * h);
+        Metrics.end(event, "first-derivative-5point", h, x, 4);
+        return result;
     }
 
     public static double secondDerivative(double h, double x, String function) {
-        Function<Double, Double> parsedFunction = Parser.getFunction(function);
-        return (parsedFunction.apply(x + h) - 2 * parsedFunction.apply(x) + parsedFunction.apply(x - h)) / (h * h);
+        return secondDerivative(h, x, ExpressionCache.shared().get(function));
+    }
+
+    public static double secondDerivative(double h, double x, DoubleUnaryOperator f) {
+        Metrics.DerivativeEvent event = Metrics.beginDerivative();
+        double result = (f.applyAsDouble(x + h) - 2 * f.applyAsDouble(x) + f.applyAsDouble(x - h)) / (h * h);
+        Metrics.end(event, "second-derivative", h, x, 3);
+        return result;
+    }
+
+    /*
+     * Derivatives over a range of evenly spaced points. f is sampled once on the lattice
+     * start + i * h and the difference stencils slide over the shared samples.
+     */
+
+    public static DerivativeGrid derivativeGrid(double h, double start, double end, double spacing, String function) {
+        return derivativeGrid(h, start, end, spacing, ExpressionCache.shared().get(function));
+    }
+
+    public static DerivativeGrid derivativeGrid(double h, double start, double end, double spacing, DoubleUnaryOperator f) {
+        Metrics.DerivativeEvent event = Metrics.beginDerivative();
+        DerivativeGrid grid = DerivativeGrid.compute(h, start, end, spacing, f);
+        Metrics.end(event, "derivative-grid", h, start, grid.getEvaluations());
+        return grid;
+    }
+
+    /*
+     * Exact derivatives. They differentiate the expression itself instead of sampling it,
+     * so they need no step size and are accurate to machine precision.
+     */
+
+    public static double exactFirstDerivative(double x, String function) {
+        Metrics.DerivativeEvent event = Metrics.beginDerivative();
+        double result = Differentiator.derivative(ExpressionCache.shared().get(function, EvaluationMode.INTERPRETED), x);
+        Metrics.end(event, "exact-first-derivative", Double.NaN, x, 1);
+        return result;
+    }
+
+    public static double exactSecondDerivative(double x, String function) {
+        Metrics.DerivativeEvent event = Metrics.beginDerivative();
+        double result = Differentiator.derivative(ExpressionCache.shared().getDerivative(function, 1, EvaluationMode.INTERPRETED), x);
+        Metrics.end(event, "exact-second-derivative", Double.NaN, x, 1);
+        return result;
+    }
+
+    /**
+    * Returns the compiled derivative f' of an expression, for evaluation at many points.
+    *
+    * @param function the expression in x
+    * @param order the order of the derivative
+    * @Returns the compiled derivative
+    */
+    public static Expression derivative(String function, int order) {
+        return ExpressionCache.shared().getDerivative(function, order);
     }
 }
@@ -0,0 +1,122 @@
+package com.example;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Finite-difference derivatives at evenly spaced points, computed from one shared set of samples.
+ * The points lie on the lattice {@code start + i * h}. When their spacing is a small multiple of h,
+ * neighbouring stencils overlap, so f is sampled once on the lattice and every stencil slides over
+ * those samples instead of evaluating its own four or five points.
+ * The 3-point, 5-point and second derivatives all come from the same samples.
+ */
+public final class DerivativeGrid {
+    /** Largest spacing, in steps, for which sampling the whole lattice is cheaper than sampling each stencil. */
+    private static final int MAX_SHARED_STRIDE = 4;
+
+    private final double[] points;
+    private final double[] firstDerivative;
+    private final double[] firstDerivative5point;
+    private final double[] secondDerivative;
+    private final long evaluations;
+
+    private DerivativeGrid(double[] points, double[] firstDerivative, double[] firstDerivative5point, double[] secondDerivative, long evaluations) {
+        this.points = points;
+        this.firstDerivative = firstDerivative;
+        this.firstDerivative5point = firstDerivative5point;
+        this.secondDerivative = secondDerivative;
+        this.evaluations = evaluations;
+    }
+
+    /**
+    * Computes the derivatives at {@code start, start + spacing, ...} up to and including {@code end}.
+    *
+    * @param h the step size of the difference stencils
+    * @param start the first point
+    * @param end the last point
+    * @param spacing the distance between points, a positive integer multiple of h
+    * @param f the function
+    * @Returns the derivatives at every point
+    * @Throws IllegalArgumentException if the spacing is not a multiple of h
+    */
+    static DerivativeGrid compute(double h, double start, double end, double spacing, DoubleUnaryOperator f) {
+        if (!(h > 0) || !(spacing > 0)) {
+            throw new IllegalArgumentException("step size and spacing must be positive");
+        }
+        double ratio = spacing / h;
+        long stride = Math.round(ratio);
+        if (stride < 1 || Math.abs(ratio - stride) > 1e-9 * ratio) {
+            throw new IllegalArgumentException("spacing must be an integer multiple of the step size");
+        }
+        if (end < start) {
+            throw new IllegalArgumentException("end must not be before start");
+        }
+        // Rounded down so the last point never passes end, with the same tolerance as GridSum.stepCount
+        double span = (end - start) / spacing;
+        long intervals = (long) Math.floor(span + 1e-9 * Math.max(1, span));
+        if (intervals + 1 > Integer.MAX_VALUE / 5) {
+            throw new IllegalArgumentException("too many points");
+        }
+        int count = (int) intervals + 1;
+        int k = (int) stride;
+        boolean shared = k <= MAX_SHARED_STRIDE;
+
+        // With a shared lattice, point j is centred on sample j*k + 2; otherwise each point has its own 5 samples
+        int sampleCount = shared ? (count - 1) * k + 5 : 5 * count;
+        double[] x = new double[sampleCount];
+        if (shared) {
+            for (int i = 0; i < sampleCount; i++) {
+                x[i] = start + (i - 2) * h;
+            }
+        } else {
+            for (int j = 0; j < count; j++) {
+                for (int offset = -2; offset <= 2; offset++) {
+                    x[5 * j + 2 + offset] = start + ((long) j * k + offset) * h;
+                }
+            }
+        }
+        double[] y = new double[sampleCount];
+        GridSum.evaluate(f, x, y, sampleCount);
+
+        double[] points = new double[count];
+        double[] first = new double[count];
+        double[] first5 = new double[count];
+        double[] second = new double[count];
+        for (int j = 0; j < count; j++) {
+            int c = shared ? j * k + 2 : 5 * j + 2;
+            points[j] = x[c];
+            first[j] = (y[c + 1] - y[c - 1]) / (2 * h);
+            first5[j] = (-y[c + 2] + 8 * y[c + 1] - 8 * y[c - 1] + y[c - 2]) / (12 * h);
+            second[j] = (y[c + 1] - 2 * y[c] + y[c - 1]) / (h * h);
+        }
+        return new DerivativeGrid(points, first, first5, second, sampleCount);
+    }
+
+    /** The points at which the derivatives were computed. */
+    public double[] getPoints() {
+        return points.clone();
+    }
+
+    /** First derivatives by the 3-point centred difference. */
+    public double[] getFirstDerivative() {
+        return firstDerivative.clone();
+    }
+
+    /** First derivatives by the 5-point centred difference. */
+    public double[] getFirstDerivative5point() {
+        return firstDerivative5point.clone();
+    }
+
+    /** Second derivatives by the 3-point centred difference. */
+    public double[] getSecondDerivative() {
+        return secondDerivative.clone();
+    }
+
+    /** The number of function evaluations used for the whole grid. */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    public int size() {
+        return points.length;
+    }
+}
@@ -0,0 +1,340 @@
+package com.example;
+
+/**
+ * Exact derivatives of compiled expressions, without a step size.
+ * <ul>
+ * <li>{@link #differentiate(Expression)} builds the derivative as a new expression tree by the usual
+ * symbolic rules. Once compiled it can be evaluated at millions of points as cheaply as the original.</li>
+ * <li>{@link #derivative(Expression, double)} uses forward-mode automatic differentiation: a single pass
+ * over the tree carries each node's value together with its derivative (a dual number).</li>
+ * </ul>
+ * Both are accurate to machine precision and cover every operator of the {@link Parser},
+ * including powers with a variable exponent and {@code log(base, x)} with a variable base.
+ */
+public class Differentiator {
+
+    private Differentiator() {
+    }
+
+    /**
+    * Differentiates an expression with respect to its first variable.
+    *
+    * @param expression the expression to differentiate
+    * @Returns the derivative as an unoptimized expression tree
+    */
+    public static Expression differentiate(Expression expression) {
+        return differentiate(expression, 0);
+    }
+
+    /**
+    * Differentiates an expression with respect to the variable in the given slot.
+    * Terms that are structurally zero are dropped while the tree is built.
+    *
+    * @param expression the expression to differentiate
+    * @param slot the position of the variable, as passed to {@link Parser#compile(String, String...)}
+    * @Returns the partial derivative as an unoptimized expression tree
+    * @Throws IllegalArgumentException if the expression is a generated class, which cannot be inspected
+    */
+    public static Expression differentiate(Expression expression, int slot) {
+        if (expression instanceof Expression.Program) {
+            return differentiate(inline((Expression.Program) expression), slot);
+        }
+        if (expression instanceof Expression.Constant) {
+            return constant(0);
+        } else if (expression instanceof Expression.Variable) {
+            return constant(((Expression.Variable) expression).slot == slot ? 1 : 0);
+        } else if (expression instanceof Expression.Unary) {
+            Expression u = ((Expression.Unary) expression).operand;
+            Expression du = differentiate(u, slot);
+            if (isZero(du)) {
+                return constant(0);
+            }
+            if (expression instanceof Expression.Negate) {
+                return negate(du);
+            } else if (expression instanceof Expression.Sin) {
+                return multiply(new Expression.Cos(u), du);
+            } else if (expression instanceof Expression.Cos) {
+                return negate(multiply(new Expression.Sin(u), du));
+            } else if (expression instanceof Expression.Tan) {
+                // d tan u = u' / cos^2 u
+                return new Expression.Divide(du, new Expression.IntegerPower(new Expression.Cos(u), 2));
+            } else if (expression instanceof Expression.Ln) {
+                return new Expression.Divide(du, u);
+            } else if (expression instanceof Expression.IntegerPower) {
+                int n = ((Expression.IntegerPower) expression).exponent;
+                if (n == 0) {
+                    // u^0 is 1 everywhere; n * u^-1 would be NaN where u is 0
+                    return constant(0);
+                }
+                Expression power = n - 1 == 1 ? u : new Expression.IntegerPower(u, n - 1);
+                return multiply(multiply(constant(n), power), du);
+            }
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            Expression u = binary.left;
+            Expression v = binary.right;
+            Expression du = differentiate(u, slot);
+            Expression dv = differentiate(v, slot);
+            if (expression instanceof Expression.Add) {
+                return add(du, dv);
+            } else if (expression instanceof Expression.Subtract) {
+                return subtract(du, dv);
+            } else if (expression instanceof Expression.Multiply) {
+                return add(multiply(du, v), multiply(u, dv));
+            } else if (expression instanceof Expression.Divide) {
+                if (isZero(dv)) {
+                    return isZero(du) ? constant(0) : new Expression.Divide(du, v);
+                }
+                return new Expression.Divide(subtract(multiply(du, v), multiply(u, dv)), new Expression.IntegerPower(v, 2));
+            } else if (expression instanceof Expression.Power) {
+                return differentiatePower(binary, du, dv);
+            } else if (expression instanceof Expression.Log) {
+                return differentiateLog(u, v, du, dv);
+            }
+        }
+        throw new IllegalArgumentException("cannot differentiate " + expression.getClass().getName());
+    }
+
+    /**
+    * (u^v)' = v u^(v-1) u' + u^v ln(u) v'. Each term is only built when its factor u' or v' is non-zero,
+    * so constant exponents never take the logarithm of a possibly negative base.
+    */
+    private static Expression differentiatePower(Expression.Binary power, Expression du, Expression dv) {
+        Expression u = power.left;
+        Expression v = power.right;
+        Expression result = constant(0);
+        if (!isZero(du)) {
+            Expression exponent = v instanceof Expression.Constant
+                    ? constant(((Expression.Constant) v).value - 1)
+                    : new Expression.Subtract(v, constant(1));
+            result = multiply(multiply(v, new Expression.Power(u, exponent)), du);
+        }
+        if (!isZero(dv)) {
+            result = add(result, multiply(multiply(power, new Expression.Ln(u)), dv));
+        }
+        return result;
+    }
+
+    /**
+    * log_b(u) = ln(u) / ln(b), so its derivative is (u'/u ln b - b'/b ln u) / ln(b)^2.
+    */
+    private static Expression differentiateLog(Expression base, Expression value, Expression dbase, Expression dvalue) {
+        Expression lnBase = new Expression.Ln(base);
+        if (isZero(dbase)) {
+            return isZero(dvalue) ? constant(0) : new Expression.Divide(dvalue, multiply(value, lnBase));
+        }
+        Expression numerator = subtract(
+                multiply(new Expression.Divide(dvalue, value), lnBase),
+                multiply(new Expression.Divide(dbase, base), new Expression.Ln(value)));
+        return new Expression.Divide(numerator, new Expression.IntegerPower(lnBase, 2));
+    }
+
+    /**
+    * Evaluates the derivative of a single-variable expression at a point by forward-mode
+    * automatic differentiation.
+    *
+    * @param expression the expression
+    * @param x the point
+    * @Returns the exact derivative at x
+    */
+    public static double derivative(Expression expression, double x) {
+        return derivative(expression, 0, x);
+    }
+
+    /**
+    * Evaluates a partial derivative at a point by forward-mode automatic differentiation.
+    *
+    * @param expression the expression
+    * @param slot the position of the variable to differentiate by
+    * @param args the values of all variables
+    * @Returns the exact partial derivative at the point
+    */
+    public static double derivative(Expression expression, int slot, double... args) {
+        DualEvaluator evaluator = new DualEvaluator(slot);
+        if (expression instanceof Expression.Program) {
+            Expression.Program program = (Expression.Program) expression;
+            int size = program.variableCount + program.shared.length;
+            evaluator.values = new double[size];
+            evaluator.tangents = new double[size];
+            System.arraycopy(args, 0, evaluator.values, 0, Math.min(args.length, program.variableCount));
+            evaluator.variableCount = program.variableCount;
+            for (int i = 0; i < program.shared.length; i++) {
+                evaluator.values[program.variableCount + i] = evaluator.evaluate(program.shared[i]);
+                evaluator.tangents[program.variableCount + i] = evaluator.tangent;
+            }
+            expression = program.result;
+        } else {
+            evaluator.values = args;
+            evaluator.variableCount = args.length;
+        }
+        evaluator.evaluate(expression);
+        return evaluator.tangent;
+    }
+
+    /**
+    * Replaces the slot references of a program by copies of the shared subexpressions.
+    */
+    static Expression inline(Expression.Program program) {
+        Expression[] definitions = new Expression[program.shared.length];
+        for (int i = 0; i < definitions.length; i++) {
+            definitions[i] = substitute(program.shared[i], program.variableCount, definitions);
+        }
+        return substitute(program.result, program.variableCount, definitions);
+    }
+
+    private static Expression substitute(Expression node, int variableCount, Expression[] definitions) {
+        if (node instanceof Expression.Variable) {
+            int slot = ((Expression.Variable) node).slot;
+            return slot >= variableCount ? definitions[slot - variableCount] : node;
+        } else if (node instanceof Expression.Unary) {
+            Expression.Unary unary = (Expression.Unary) node;
+            return ExpressionOptimizer.withOperand(unary, substitute(unary.operand, variableCount, definitions));
+        } else if (node instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) node;
+            return ExpressionOptimizer.withOperands(binary,
+                    substitute(binary.left, variableCount, definitions),
+                    substitute(binary.right, variableCount, definitions));
+        }
+        return node;
+    }
+
+    private static Expression constant(double value) {
+        return new Expression.Constant(value);
+    }
+
+    private static boolean isZero(Expression expression) {
+        return expression instanceof Expression.Constant && ((Expression.Constant) expression).value == 0;
+    }
+
+    private static boolean isOne(Expression expression) {
+        return expression instanceof Expression.Constant && ((Expression.Constant) expression).value == 1;
+    }
+
+    private static Expression add(Expression a, Expression b) {
+        if (isZero(a)) {
+            return b;
+        }
+        return isZero(b) ? a : new Expression.Add(a, b);
+    }
+
+    private static Expression subtract(Expression a, Expression b) {
+        if (isZero(b)) {
+            return a;
+        }
+        return isZero(a) ? negate(b) : new Expression.Subtract(a, b);
+    }
+
+    private static Expression multiply(Expression a, Expression b) {
+        if (isZero(a) || isZero(b)) {
+            return constant(0);
+        } else if (isOne(a)) {
+            return b;
+        }
+        return isOne(b) ? a : new Expression.Multiply(a, b);
+    }
+
+    private static Expression negate(Expression a) {
+        if (a instanceof Expression.Constant) {
+            return constant(-((Expression.Constant) a).value);
+        }
+        return a instanceof Expression.Negate ? ((Expression.Negate) a).operand : new Expression.Negate(a);
+    }
+
+    /**
+     * Evaluates a tree on dual numbers. Each call returns the value of a node and leaves its
+     * derivative in {@link #tangent}, so no dual number objects are allocated.
+     */
+    private static final class DualEvaluator {
+        private final int slot;
+        double[] values;
+        double[] tangents;
+        int variableCount;
+        double tangent;
+
+        DualEvaluator(int slot) {
+            this.slot = slot;
+        }
+
+        double evaluate(Expression node) {
+            if (node instanceof Expression.Constant) {
+                tangent = 0;
+                return ((Expression.Constant) node).value;
+            } else if (node instanceof Expression.Variable) {
+                int index = ((Expression.Variable) node).slot;
+                tangent = index >= variableCount ? tangents[index] : index == slot ? 1 : 0;
+                return values[index];
+            } else if (node instanceof Expression.Unary) {
+                return evaluateUnary(node, evaluate(((Expression.Unary) node).operand));
+            } else if (node instanceof Expression.Binary) {
+                Expression.Binary binary = (Expression.Binary) node;
+                double u = evaluate(binary.left);
+                double du = tangent;
+                double v = evaluate(binary.right);
+                double dv = tangent;
+                return evaluateBinary(binary, u, du, v, dv);
+            }
+            throw new IllegalArgumentException("cannot differentiate " + node.getClass().getName());
+        }
+
+        private double evaluateUnary(Expression node, double u) {
+            double du = tangent;
+            if (node instanceof Expression.Negate) {
+                tangent = -du;
+                return -u;
+            } else if (node instanceof Expression.Sin) {
+                tangent = Math.cos(u) * du;
+                return Math.sin(u);
+            } else if (node instanceof Expression.Cos) {
+                tangent = -Math.sin(u) * du;
+                return Math.cos(u);
+            } else if (node instanceof Expression.Tan) {
+                double cos = Math.cos(u);
+                tangent = du / (cos * cos);
+                return Math.tan(u);
+            } else if (node instanceof Expression.Ln) {
+                tangent = du / u;
+                return Math.log(u);
+            } else if (node instanceof Expression.IntegerPower) {
+                int n = ((Expression.IntegerPower) node).exponent;
+                tangent = n == 0 ? 0 : n * Expression.integerPower(u, n - 1) * du;
+                return Expression.integerPower(u, n);
+            }
+            throw new IllegalArgumentException("cannot differentiate " + node.getClass().getName());
+        }
+
+        private double evaluateBinary(Expression.Binary node, double u, double du, double v, double dv) {
+            if (node instanceof Expression.Add) {
+                tangent = du + dv;
+                return u + v;
+            } else if (node instanceof Expression.Subtract) {
+                tangent = du - dv;
+                return u - v;
+            } else if (node instanceof Expression.Multiply) {
+                tangent = du * v + u * dv;
+                return u * v;
+            } else if (node instanceof Expression.Divide) {
+                double value = Expression.divide(u, v);
+                tangent = (du - value * dv) / v;
+                return value;
+            } else if (node instanceof Expression.Power) {
+                double value = Math.pow(u, v);
+                double result = 0;
+                // u^0 is constant; v u^(v-1) would be 0 * Inf where u is 0
+                if (du != 0 && v != 0) {
+                    result += v * Math.pow(u, v - 1) * du;
+                }
+                if (dv != 0) {
+                    result += value * Math.log(u) * dv;
+                }
+                tangent = result;
+                return value;
+            } else if (node instanceof Expression.Log) {
+                double lnBase = Math.log(u);
+                double lnValue = Math.log(v);
+                tangent = (dv / v * lnBase - du / u * lnValue) / (lnBase * lnBase);
+                return lnValue / lnBase;
+            }
+            throw new IllegalArgumentException("cannot differentiate " + node.getClass().getName());
+        }
+    }
+}
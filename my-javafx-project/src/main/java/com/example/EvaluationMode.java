@@ -0,0 +1,33 @@
+package com.example;
+
+/**
+ * Selects how a compiled expression is evaluated.
+ * The default is read from the system property {@code integratewithease.evaluation}
+ * ({@code interpreted} or {@code generated}) and can be changed at runtime.
+ */
+public enum EvaluationMode {
+    /** Walks the expression tree for every evaluation. */
+    INTERPRETED,
+    /** Generates a JVM class for the expression that the JIT can inline like handwritten code. */
+    GENERATED;
+
+    private static volatile EvaluationMode defaultMode = fromProperty(System.getProperty("integratewithease.evaluation"));
+
+    public static EvaluationMode getDefault() {
+        return defaultMode;
+    }
+
+    public static void setDefault(EvaluationMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode must not be null");
+        }
+        defaultMode = mode;
+    }
+
+    private static EvaluationMode fromProperty(String value) {
+        if (value != null && value.trim().equalsIgnoreCase("generated")) {
+            return GENERATED;
+        }
+        return INTERPRETED;
+    }
+}
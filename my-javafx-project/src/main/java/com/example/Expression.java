@@ -0,0 +1,574 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A compiled mathematical expression produced by {@link Parser#compile(String, String...)}.
+ * The expression is an immutable tree of nodes, so a single instance can be evaluated
+ * from many threads at once without any locking.
+ * Evaluation works directly on primitive doubles and does not allocate.
+ * Whole arrays of arguments can be evaluated at once with {@link #applyAll(double[], double[], int)},
+ * which runs the tree operator by operator over blocks of the array.
+ */
+public abstract class Expression implements DoubleUnaryOperator {
+    /** Number of arguments evaluated per column, small enough for the intermediate columns to stay in L1. */
+    static final int COLUMN_LENGTH = 512;
+
+    /**
+    * Evaluates the expression for a single variable.
+    * The argument is bound to the first (and only) variable of the expression.
+    *
+    * @param x the value of the variable
+    * @Returns the result of the evaluated expression
+    */
+    @Override
+    public abstract double applyAsDouble(double x);
+
+    /**
+    * Evaluates the expression with one value per variable, in the order the variables
+    * were declared when the expression was compiled.
+    *
+    * @param args the values of the variables
+    * @Returns the result of the evaluated expression
+    */
+    public abstract double evaluate(double... args);
+
+    /**
+    * Evaluates the expression for a single variable over an array of arguments.
+    * The tree is evaluated column by column: each operator runs as one tight loop over a block
+    * of values, which the JIT can unroll and vectorize, instead of walking the tree once per point.
+    *
+    * @param x the values of the variable
+    * @param out receives the results, {@code out[i] = applyAsDouble(x[i])}
+    * @param length the number of values to evaluate
+    */
+    public void applyAll(double[] x, double[] out, int length) {
+        if (length > x.length || length > out.length) {
+            throw new IllegalArgumentException("length exceeds the array size");
+        }
+        Columns columns = new Columns();
+        for (int from = 0; from < length; from += COLUMN_LENGTH) {
+            column(x, from, Math.min(COLUMN_LENGTH, length - from), out, from, columns);
+        }
+    }
+
+    /**
+    * Evaluates {@code length} arguments starting at {@code x[from]} into {@code out[outFrom]} onwards.
+    * Tree nodes override this with one loop per operator; other subclasses evaluate point by point.
+    */
+    void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+        for (int i = 0; i < length; i++) {
+            out[outFrom + i] = applyAsDouble(x[from + i]);
+        }
+    }
+
+    /**
+     * Scratch columns for intermediate results, reused as a stack while the tree is evaluated.
+     */
+    static final class Columns {
+        private double[][] stack = new double[4][];
+        private int depth;
+        /** Columns of the shared subexpressions of a {@link Program}, indexed by slot. */
+        double[][] slots;
+
+        double[] push() {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            if (stack[depth] == null) {
+                stack[depth] = new double[COLUMN_LENGTH];
+            }
+            return stack[depth++];
+        }
+
+        void pop() {
+            depth--;
+        }
+    }
+
+    static final class Constant extends Expression {
+        final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return value;
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return value;
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            Arrays.fill(out, outFrom, outFrom + length, value);
+        }
+    }
+
+    static final class Variable extends Expression {
+        final String name;
+        final int slot;
+
+        Variable(String name, int slot) {
+            this.name = name;
+            this.slot = slot;
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            if (slot != 0) {
+                throw new IllegalStateException("expression has more than one variable, use evaluate");
+            }
+            return x;
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return args[slot];
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            if (slot == 0) {
+                System.arraycopy(x, from, out, outFrom, length);
+            } else if (columns.slots != null && slot < columns.slots.length && columns.slots[slot] != null) {
+                System.arraycopy(columns.slots[slot], 0, out, outFrom, length);
+            } else {
+                throw new IllegalStateException("expression has more than one variable, use evaluate");
+            }
+        }
+    }
+
+    abstract static class Unary extends Expression {
+        final Expression operand;
+
+        Unary(Expression operand) {
+            this.operand = operand;
+        }
+    }
+
+    static final class Negate extends Unary {
+        Negate(Expression operand) {
+            super(operand);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return -operand.applyAsDouble(x);
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return -operand.evaluate(args);
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            operand.column(x, from, length, out, outFrom, columns);
+            for (int i = outFrom; i < outFrom + length; i++) {
+                out[i] = -out[i];
+            }
+        }
+    }
+
+    abstract static class Binary extends Expression {
+        final Expression left;
+        final Expression right;
+
+        Binary(Expression left, Expression right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            left.column(x, from, length, out, outFrom, columns);
+            double[] rightColumn = columns.push();
+            right.column(x, from, length, rightColumn, 0, columns);
+            combine(out, outFrom, rightColumn, length);
+            columns.pop();
+        }
+
+        /**
+        * Combines the left column (in {@code out}) with the right column element by element.
+        */
+        abstract void combine(double[] out, int outFrom, double[] rightColumn, int length);
+    }
+
+    static final class Add extends Binary {
+        Add(Expression left, Expression right) {
+            super(left, right);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return left.applyAsDouble(x) + right.applyAsDouble(x);
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return left.evaluate(args) + right.evaluate(args);
+        }
+
+        @Override
+        void combine(double[] out, int outFrom, double[] rightColumn, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = out[outFrom + i] + rightColumn[i];
+            }
+        }
+    }
+
+    static final class Subtract extends Binary {
+        Subtract(Expression left, Expression right) {
+            super(left, right);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return left.applyAsDouble(x) - right.applyAsDouble(x);
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return left.evaluate(args) - right.evaluate(args);
+        }
+
+        @Override
+        void combine(double[] out, int outFrom, double[] rightColumn, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = out[outFrom + i] - rightColumn[i];
+            }
+        }
+    }
+
+    static final class Multiply extends Binary {
+        Multiply(Expression left, Expression right) {
+            super(left, right);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return left.applyAsDouble(x) * right.applyAsDouble(x);
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return left.evaluate(args) * right.evaluate(args);
+        }
+
+        @Override
+        void combine(double[] out, int outFrom, double[] rightColumn, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = out[outFrom + i] * rightColumn[i];
+            }
+        }
+    }
+
+    static final class Divide extends Binary {
+        Divide(Expression left, Expression right) {
+            super(left, right);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return divide(left.applyAsDouble(x), right.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return divide(left.evaluate(args), right.evaluate(args));
+        }
+
+        @Override
+        void combine(double[] out, int outFrom, double[] rightColumn, int length) {
+            for (int i = 0; i < length; i++) {
+                if (rightColumn[i] == 0) {
+                    throw new ArithmeticException("division by zero");
+                }
+            }
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = out[outFrom + i] / rightColumn[i];
+            }
+        }
+    }
+
+    static final class Power extends Binary {
+        Power(Expression left, Expression right) {
+            super(left, right);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return Math.pow(left.applyAsDouble(x), right.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return Math.pow(left.evaluate(args), right.evaluate(args));
+        }
+
+        @Override
+        void combine(double[] out, int outFrom, double[] rightColumn, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = Math.pow(out[outFrom + i], rightColumn[i]);
+            }
+        }
+    }
+
+    static final class Log extends Binary {
+        Log(Expression base, Expression value) {
+            super(base, value);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return Math.log(right.applyAsDouble(x)) / Math.log(left.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return Math.log(right.evaluate(args)) / Math.log(left.evaluate(args));
+        }
+
+        @Override
+        void combine(double[] out, int outFrom, double[] rightColumn, int length) {
+            for (int i = 0; i < length; i++) {
+                out[outFrom + i] = Math.log(rightColumn[i]) / Math.log(out[outFrom + i]);
+            }
+        }
+    }
+
+    static final class Sin extends Unary {
+        Sin(Expression operand) {
+            super(operand);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return Math.sin(operand.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return Math.sin(operand.evaluate(args));
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            operand.column(x, from, length, out, outFrom, columns);
+            for (int i = outFrom; i < outFrom + length; i++) {
+                out[i] = Math.sin(out[i]);
+            }
+        }
+    }
+
+    static final class Cos extends Unary {
+        Cos(Expression operand) {
+            super(operand);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return Math.cos(operand.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return Math.cos(operand.evaluate(args));
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            operand.column(x, from, length, out, outFrom, columns);
+            for (int i = outFrom; i < outFrom + length; i++) {
+                out[i] = Math.cos(out[i]);
+            }
+        }
+    }
+
+    static final class Tan extends Unary {
+        Tan(Expression operand) {
+            super(operand);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return Math.tan(operand.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return Math.tan(operand.evaluate(args));
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            operand.column(x, from, length, out, outFrom, columns);
+            for (int i = outFrom; i < outFrom + length; i++) {
+                out[i] = Math.tan(out[i]);
+            }
+        }
+    }
+
+    static final class Ln extends Unary {
+        Ln(Expression operand) {
+            super(operand);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return Math.log(operand.applyAsDouble(x));
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return Math.log(operand.evaluate(args));
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            operand.column(x, from, length, out, outFrom, columns);
+            for (int i = outFrom; i < outFrom + length; i++) {
+                out[i] = Math.log(out[i]);
+            }
+        }
+    }
+
+    /**
+     * A power with a small constant integer exponent, evaluated by repeated multiplication
+     * instead of {@link Math#pow}.
+     */
+    static final class IntegerPower extends Unary {
+        final int exponent;
+
+        IntegerPower(Expression base, int exponent) {
+            super(base);
+            this.exponent = exponent;
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return integerPower(operand.applyAsDouble(x), exponent);
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            return integerPower(operand.evaluate(args), exponent);
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            operand.column(x, from, length, out, outFrom, columns);
+            if (exponent == 2) {
+                for (int i = outFrom; i < outFrom + length; i++) {
+                    out[i] = out[i] * out[i];
+                }
+            } else {
+                for (int i = outFrom; i < outFrom + length; i++) {
+                    out[i] = integerPower(out[i], exponent);
+                }
+            }
+        }
+    }
+
+    /**
+     * An expression whose repeated subexpressions are computed once per evaluation.
+     * Each shared subexpression is stored in a slot after the variables, and the rest of the
+     * program refers to it with a {@link Variable} of that slot. Scalar evaluation keeps the
+     * slots in a per-thread frame, batch evaluation keeps one column per slot.
+     */
+    static final class Program extends Expression {
+        private static final ThreadLocal<double[]> FRAMES = ThreadLocal.withInitial(() -> new double[16]);
+
+        final int variableCount;
+        /** {@code shared[i]} is stored in slot {@code variableCount + i} and may use lower slots. */
+        final Expression[] shared;
+        final Expression result;
+
+        Program(int variableCount, Expression[] shared, Expression result) {
+            this.variableCount = variableCount;
+            this.shared = shared;
+            this.result = result;
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            if (variableCount > 1) {
+                throw new IllegalStateException("expression has more than one variable, use evaluate");
+            }
+            double[] frame = frame();
+            frame[0] = x;
+            return run(frame);
+        }
+
+        @Override
+        public double evaluate(double... args) {
+            double[] frame = frame();
+            System.arraycopy(args, 0, frame, 0, Math.min(args.length, variableCount));
+            return run(frame);
+        }
+
+        private double[] frame() {
+            double[] frame = FRAMES.get();
+            if (frame.length < variableCount + shared.length) {
+                frame = new double[variableCount + shared.length];
+                FRAMES.set(frame);
+            }
+            return frame;
+        }
+
+        private double run(double[] frame) {
+            for (int i = 0; i < shared.length; i++) {
+                frame[variableCount + i] = shared[i].evaluate(frame);
+            }
+            return result.evaluate(frame);
+        }
+
+        @Override
+        void column(double[] x, int from, int length, double[] out, int outFrom, Columns columns) {
+            if (variableCount > 1) {
+                throw new IllegalStateException("expression has more than one variable, use evaluate");
+            }
+            double[][] slots = new double[variableCount + shared.length][];
+            columns.slots = slots;
+            for (int i = 0; i < shared.length; i++) {
+                double[] column = columns.push();
+                shared[i].column(x, from, length, column, 0, columns);
+                slots[variableCount + i] = column;
+            }
+            result.column(x, from, length, out, outFrom, columns);
+            for (int i = 0; i < shared.length; i++) {
+                columns.pop();
+            }
+            columns.slots = null;
+        }
+    }
+
+    static double integerPower(double base, int exponent) {
+        int n = Math.abs(exponent);
+        double result = 1;
+        double square = base;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                result *= square;
+            }
+            n >>= 1;
+            if (n > 0) {
+                square *= square;
+            }
+        }
+        return exponent < 0 ? 1 / result : result;
+    }
+
+    static double divide(double dividend, double divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("division by zero");
+        }
+        return dividend / divisor;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A size-bounded cache of compiled single-variable expressions and their derivatives.
+ * Expressions are keyed by their whitespace-normalized source and evaluation mode, so
+ * {@code "sin(x) * x"} and {@code "sin(x)*x"} share one compiled tree. When the cache is full
+ * the least recently used expression is evicted.
+ * The cache is safe to use from many threads; compilation happens outside the lock. Threads that
+ * miss on an expression that another thread is already compiling wait for that compilation instead
+ * of repeating it, so a burst of requests for a new expression compiles it once.
+ */
+public class ExpressionCache {
+    /** Capacity of the shared cache, configurable with {@code -Dintegratewithease.cache.size}. */
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("integratewithease.cache.size", 1024);
+
+    private static final ExpressionCache SHARED = new ExpressionCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<String, Expression> entries;
+    private final Map<String, CompletableFuture<Expression>> compiling = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+    * Creates an empty cache.
+    *
+    * @param capacity the maximum number of compiled expressions kept
+    */
+    public ExpressionCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                if (size() > ExpressionCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+    * Returns the cache used by {@link IntegrationMethods} and {@link DerivationMethods}.
+    *
+    * @Returns the shared cache
+    */
+    public static ExpressionCache shared() {
+        return SHARED;
+    }
+
+    /**
+    * Returns the compiled form of an expression in {@code x} for the default evaluation mode.
+    *
+    * @param expression the mathematical expression
+    * @Returns the compiled expression
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public Expression get(String expression) {
+        return get(expression, EvaluationMode.getDefault());
+    }
+
+    /**
+    * Returns the compiled form of an expression in {@code x}, compiling it on a miss.
+    *
+    * @param expression the mathematical expression
+    * @param mode how the compiled expression is evaluated
+    * @Returns the compiled expression
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public Expression get(String expression, EvaluationMode mode) {
+        String normalized = Parser.normalize(expression);
+        return lookup(mode.name() + ':' + normalized, () -> Parser.compile(normalized, mode));
+    }
+
+    /**
+    * Returns the compiled form of an expression in several variables for the default evaluation mode.
+    *
+    * @param expression the mathematical expression
+    * @param variableNames the names of the variables, in the order their values are passed to {@link Expression#evaluate(double...)}
+    * @Returns the compiled expression
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public Expression get(String expression, String... variableNames) {
+        if (variableNames.length == 1 && variableNames[0].equals("x")) {
+            return get(expression);
+        }
+        EvaluationMode mode = EvaluationMode.getDefault();
+        String normalized = Parser.normalize(expression);
+        String key = mode.name() + ":(" + String.join(",", variableNames) + "):" + normalized;
+        return lookup(key, () -> Parser.compile(normalized, mode, variableNames));
+    }
+
+    /**
+    * Returns the compiled derivative of an expression in {@code x} for the default evaluation mode.
+    *
+    * @param expression the mathematical expression
+    * @param order the order of the derivative, at least 1
+    * @Returns the compiled derivative
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public Expression getDerivative(String expression, int order) {
+        return getDerivative(expression, order, EvaluationMode.getDefault());
+    }
+
+    /**
+    * Returns the compiled derivative of an expression in {@code x}, differentiating it symbolically on a miss.
+    *
+    * @param expression the mathematical expression
+    * @param order the order of the derivative, at least 1
+    * @param mode how the compiled derivative is evaluated
+    * @Returns the compiled derivative
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public Expression getDerivative(String expression, int order, EvaluationMode mode) {
+        if (order < 1) {
+            throw new IllegalArgumentException("order must be at least 1");
+        }
+        String normalized = Parser.normalize(expression);
+        return lookup(mode.name() + ":d" + order + ':' + normalized, () -> {
+            Expression tree = Parser.compile(normalized);
+            for (int i = 0; i < order; i++) {
+                tree = ExpressionOptimizer.simplify(Differentiator.differentiate(tree));
+            }
+            return Parser.prepare(tree, mode);
+        });
+    }
+
+    private Expression lookup(String key, Supplier<Expression> compiler) {
+        Expression compiled = cached(key);
+        if (compiled != null) {
+            hits.increment();
+            return compiled;
+        }
+        CompletableFuture<Expression> compilation = new CompletableFuture<>();
+        CompletableFuture<Expression> running = compiling.putIfAbsent(key, compilation);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                // Waiters see the same error as the compiling thread, such as a malformed expression
+                throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+            }
+        }
+        try {
+            // The previous compilation may have finished between the lookup and putIfAbsent
+            compiled = cached(key);
+            if (compiled != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                compiled = compiler.get();
+                synchronized (entries) {
+                    entries.put(key, compiled);
+                }
+            }
+            compilation.complete(compiled);
+            return compiled;
+        } catch (RuntimeException ex) {
+            compilation.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            compiling.remove(key, compilation);
+        }
+    }
+
+    private Expression cached(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /**
+    * Removes all compiled expressions. The counters are kept.
+    */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /** The number of misses that waited for another thread's compilation of the same expression. */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+    * Returns the fraction of lookups that were served from the cache.
+    *
+    * @Returns the hit rate between 0 and 1, or 0 if there were no lookups
+    */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses() + getCoalesced();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExpressionCache[size=%d/%d, hits=%d, misses=%d, coalesced=%d, evictions=%d]",
+                size(), capacity, getHits(), getMisses(), getCoalesced(), getEvictions());
+    }
+}
@@ -0,0 +1,320 @@
+package com.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Turns an expression tree into a generated JVM class.
+ * The tree is translated into Java source, compiled in memory with the system Java compiler
+ * and defined in a private class loader. The result is a plain subclass of {@link Expression}
+ * whose methods contain straight-line code such as {@code Math.sin(x) * x}, which C2 can inline
+ * into the calling loop.
+ * When no compiler is available (for example on a JRE) or the class cannot be defined,
+ * the interpreted tree is returned instead.
+ */
+public class ExpressionCodeGenerator {
+    private static final String PACKAGE = "com.example.generated";
+    private static final AtomicLong counter = new AtomicLong();
+
+    private ExpressionCodeGenerator() {
+    }
+
+    /**
+    * Checks whether a system Java compiler is available for code generation.
+    *
+    * @Returns true if {@link #generate(Expression)} can generate classes in this JVM
+    */
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /**
+    * Generates a class for the given expression tree.
+    *
+    * @param expression the expression tree
+    * @Returns the generated expression, or {@code expression} itself if code generation is unavailable
+    */
+    public static Expression generate(Expression expression) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return expression;
+        }
+        String className = "GeneratedExpression" + counter.incrementAndGet();
+        String source = toSource(className, expression);
+        try {
+            Map<String, byte[]> classes = compile(compiler, PACKAGE + "." + className, source);
+            if (classes == null) {
+                return expression;
+            }
+            Class<?> generated = new GeneratedClassLoader(classes).loadClass(PACKAGE + "." + className);
+            return (Expression) generated.getDeclaredConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException | LinkageError | SecurityException e) {
+            return expression;
+        }
+    }
+
+    /**
+    * Translates an expression tree into the source of a class extending {@link Expression}.
+    *
+    * @param className the simple name of the generated class
+    * @param expression the expression tree
+    * @Returns the Java source code
+    */
+    static String toSource(String className, Expression expression) {
+        int variableCount = expression instanceof Expression.Program
+                ? ((Expression.Program) expression).variableCount
+                : ExpressionOptimizer.maxSlot(expression) + 1;
+        boolean unary = variableCount <= 1;
+        StringBuilder out = new StringBuilder();
+        out.append("package ").append(PACKAGE).append(";\n\n");
+        out.append("public final class ").append(className).append(" extends com.example.Expression {\n");
+        out.append("    @Override\n    public double applyAsDouble(double x) {\n");
+        if (unary) {
+            appendBody(expression, "x", "return ", "        ", out);
+        } else {
+            out.append("        throw new IllegalStateException(\"expression has more than one variable, use evaluate\");\n");
+        }
+        out.append("    }\n\n");
+        if (unary) {
+            // A dedicated loop lets the JIT compile the whole batch as one inlined method
+            out.append("    @Override\n    public void applyAll(double[] xs, double[] out, int length) {\n");
+            out.append("        if (length > xs.length || length > out.length) {\n");
+            out.append("            throw new IllegalArgumentException(\"length exceeds the array size\");\n");
+            out.append("        }\n");
+            out.append("        for (int i = 0; i < length; i++) {\n");
+            out.append("            double x = xs[i];\n");
+            appendBody(expression, "x", "out[i] = ", "            ", out);
+            out.append("        }\n    }\n\n");
+        }
+        out.append("    @Override\n    public double evaluate(double... args) {\n");
+        appendBody(expression, null, "return ", "        ", out);
+        out.append("    }\n\n");
+        out.append("    private static double div(double dividend, double divisor) {\n");
+        out.append("        if (divisor == 0) {\n");
+        out.append("            throw new ArithmeticException(\"division by zero\");\n");
+        out.append("        }\n");
+        out.append("        return dividend / divisor;\n");
+        out.append("    }\n\n");
+        out.append("    private static double square(double value) {\n");
+        out.append("        return value * value;\n");
+        out.append("    }\n\n");
+        // The same squarings as Expression.integerPower, so both modes round alike
+        out.append("    private static double ipow(double base, int exponent) {\n");
+        out.append("        int n = Math.abs(exponent);\n");
+        out.append("        double result = 1;\n");
+        out.append("        double square = base;\n");
+        out.append("        while (n > 0) {\n");
+        out.append("            if ((n & 1) != 0) {\n");
+        out.append("                result *= square;\n");
+        out.append("            }\n");
+        out.append("            n >>= 1;\n");
+        out.append("            if (n > 0) {\n");
+        out.append("                square *= square;\n");
+        out.append("            }\n");
+        out.append("        }\n");
+        out.append("        return exponent < 0 ? 1 / result : result;\n");
+        out.append("    }\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+    * Appends the statements that compute an expression. Shared subexpressions of a program become
+    * local variables {@code t<slot>}, and the last statement is {@code result} followed by the value.
+    */
+    private static void appendBody(Expression expression, String unaryName, String result, String indent, StringBuilder out) {
+        int variableCount = Integer.MAX_VALUE;
+        if (expression instanceof Expression.Program) {
+            Expression.Program program = (Expression.Program) expression;
+            variableCount = program.variableCount;
+            for (int i = 0; i < program.shared.length; i++) {
+                out.append(indent).append("double t").append(variableCount + i).append(" = ");
+                appendJava(program.shared[i], unaryName, variableCount, out);
+                out.append(";\n");
+            }
+            expression = program.result;
+        }
+        out.append(indent).append(result);
+        appendJava(expression, unaryName, variableCount, out);
+        out.append(";\n");
+    }
+
+    /**
+    * Appends the Java source of a node. Single-variable code reads the variable from {@code unaryName},
+    * multi-variable code (when {@code unaryName} is null) reads it from the {@code args} array.
+    * Slots from {@code variableCount} on refer to shared subexpressions.
+    */
+    private static void appendJava(Expression expression, String unaryName, int variableCount, StringBuilder out) {
+        if (expression instanceof Expression.Constant) {
+            out.append(literal(((Expression.Constant) expression).value));
+        } else if (expression instanceof Expression.Variable) {
+            int slot = ((Expression.Variable) expression).slot;
+            if (slot >= variableCount) {
+                out.append('t').append(slot);
+            } else {
+                out.append(unaryName != null ? unaryName : "args[" + slot + "]");
+            }
+        } else if (expression instanceof Expression.Negate) {
+            out.append("(-");
+            appendJava(((Expression.Unary) expression).operand, unaryName, variableCount, out);
+            out.append(')');
+        } else if (expression instanceof Expression.IntegerPower) {
+            int exponent = ((Expression.IntegerPower) expression).exponent;
+            out.append(exponent == 2 ? "square(" : "ipow(");
+            appendJava(((Expression.Unary) expression).operand, unaryName, variableCount, out);
+            out.append(exponent == 2 ? ")" : ", " + exponent + ")");
+        } else if (expression instanceof Expression.Unary) {
+            out.append(unaryFunction(expression)).append('(');
+            appendJava(((Expression.Unary) expression).operand, unaryName, variableCount, out);
+            out.append(')');
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            if (expression instanceof Expression.Log) {
+                out.append("(Math.log(");
+                appendJava(binary.right, unaryName, variableCount, out);
+                out.append(") / Math.log(");
+                appendJava(binary.left, unaryName, variableCount, out);
+                out.append("))");
+                return;
+            }
+            String call = binary instanceof Expression.Divide ? "div(" : binary instanceof Expression.Power ? "Math.pow(" : null;
+            out.append(call != null ? call : "(");
+            appendJava(binary.left, unaryName, variableCount, out);
+            out.append(call != null ? ", " : " " + binaryOperator(binary) + " ");
+            appendJava(binary.right, unaryName, variableCount, out);
+            out.append(')');
+        } else {
+            throw new IllegalArgumentException("cannot generate code for " + expression.getClass().getName());
+        }
+    }
+
+    private static String unaryFunction(Expression expression) {
+        if (expression instanceof Expression.Sin) {
+            return "Math.sin";
+        } else if (expression instanceof Expression.Cos) {
+            return "Math.cos";
+        } else if (expression instanceof Expression.Tan) {
+            return "Math.tan";
+        } else if (expression instanceof Expression.Ln) {
+            return "Math.log";
+        }
+        throw new IllegalArgumentException("cannot generate code for " + expression.getClass().getName());
+    }
+
+    private static String binaryOperator(Expression.Binary binary) {
+        if (binary instanceof Expression.Add) {
+            return "+";
+        } else if (binary instanceof Expression.Subtract) {
+            return "-";
+        } else if (binary instanceof Expression.Multiply) {
+            return "*";
+        }
+        throw new IllegalArgumentException("cannot generate code for " + binary.getClass().getName());
+    }
+
+    private static String literal(double value) {
+        if (Double.isNaN(value)) {
+            return "Double.NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        // Hexadecimal literals round-trip the exact bits of the constant
+        return "(" + Double.toHexString(value) + ")";
+    }
+
+    private static Map<String, byte[]> compile(JavaCompiler compiler, String binaryName, String source) throws IOException {
+        List<String> options = new ArrayList<>();
+        options.add("-classpath");
+        options.add(classPath());
+        options.add("-g:none");
+        JavaFileObject unit = new SourceFile(binaryName, source);
+        // Closing the forwarding manager closes the standard one, which holds open the jars of the class path
+        try (StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null);
+                InMemoryFileManager fileManager = new InMemoryFileManager(standard)) {
+            Boolean success = compiler.getTask(null, fileManager, diagnostic -> { }, options, null, List.of(unit)).call();
+            return Boolean.TRUE.equals(success) ? fileManager.classes : null;
+        }
+    }
+
+    private static String classPath() {
+        String classPath = System.getProperty("java.class.path", "");
+        try {
+            String location = new File(Expression.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            return classPath.isEmpty() ? location : location + File.pathSeparator + classPath;
+        } catch (Exception e) {
+            return classPath;
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(String binaryName, String source) {
+            super(URI.create("string:///" + binaryName.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static final class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+        final Map<String, byte[]> classes = new HashMap<>();
+
+        InMemoryFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classes.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        GeneratedClassLoader(Map<String, byte[]> classes) {
+            super(Expression.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
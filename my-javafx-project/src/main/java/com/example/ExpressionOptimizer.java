@@ -0,0 +1,275 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites an expression tree into an equivalent one that is cheaper to evaluate.
+ * <ul>
+ * <li>Constant folding: subtrees without variables, such as {@code log(2,8)*3}, become a single constant.</li>
+ * <li>Strength reduction: small constant integer powers such as {@code x^2} become repeated multiplication.</li>
+ * <li>Common subexpression elimination: a costly subtree that occurs more than once, such as {@code sin(x)}
+ * in {@code sin(x)^2+sin(x)}, is evaluated once per evaluation and reused.</li>
+ * </ul>
+ * Folding never hides a runtime error: a constant division by zero is left in place.
+ */
+public class ExpressionOptimizer {
+    /** Largest exponent that is reduced to multiplications. */
+    static final int MAX_INTEGER_EXPONENT = 8;
+    /** Minimal cost of a repeated subtree before it is worth a slot of its own. */
+    static final int SHARING_THRESHOLD = 8;
+
+    private ExpressionOptimizer() {
+    }
+
+    /**
+    * Optimizes an expression tree.
+    *
+    * @param expression the expression tree, as built by {@link Parser#compile(String, String...)}
+    * @Returns an equivalent, optimized expression
+    */
+    public static Expression optimize(Expression expression) {
+        if (expression instanceof Expression.Program) {
+            return expression;
+        }
+        Expression simplified = simplify(expression);
+        return eliminateCommonSubexpressions(simplified, Math.max(1, maxSlot(simplified) + 1));
+    }
+
+    /**
+    * Folds constants and reduces integer powers, bottom-up.
+    */
+    static Expression simplify(Expression expression) {
+        if (expression instanceof Expression.Unary) {
+            Expression.Unary unary = (Expression.Unary) expression;
+            Expression operand = simplify(unary.operand);
+            if (expression instanceof Expression.Negate && operand instanceof Expression.Negate) {
+                return ((Expression.Negate) operand).operand;
+            }
+            return fold(withOperand(unary, operand));
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            Expression left = simplify(binary.left);
+            Expression right = simplify(binary.right);
+            Expression identity = applyIdentity(binary, left, right);
+            if (identity != null) {
+                return identity;
+            }
+            return fold(withOperands(binary, left, right));
+        }
+        return expression;
+    }
+
+    /**
+    * Applies identities that hold for every double, including NaN, infinities and signed zeros.
+    *
+    * @Returns the simplified node, or null if no identity applies
+    */
+    private static Expression applyIdentity(Expression.Binary binary, Expression left, Expression right) {
+        if (!(right instanceof Expression.Constant)) {
+            return null;
+        }
+        double value = ((Expression.Constant) right).value;
+        if ((binary instanceof Expression.Multiply || binary instanceof Expression.Divide) && value == 1) {
+            return left;
+        } else if (binary instanceof Expression.Subtract && value == 0) {
+            return left;
+        } else if (binary instanceof Expression.Power) {
+            if (value == 0 && (left instanceof Expression.Constant || left instanceof Expression.Variable)) {
+                // Other bases may throw, such as (1/(x-x))^0, so they stay evaluated as an integer power below
+                return new Expression.Constant(1);
+            } else if (value == 1) {
+                return left;
+            } else if (!(left instanceof Expression.Constant) && value == Math.rint(value) && Math.abs(value) <= MAX_INTEGER_EXPONENT) {
+                return new Expression.IntegerPower(left, (int) value);
+            }
+        }
+        return null;
+    }
+
+    /**
+    * Replaces a node whose operands are all constants by its value.
+    */
+    private static Expression fold(Expression expression) {
+        if (expression instanceof Expression.Unary && ((Expression.Unary) expression).operand instanceof Expression.Constant) {
+            return new Expression.Constant(expression.evaluate());
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            if (binary.left instanceof Expression.Constant && binary.right instanceof Expression.Constant) {
+                if (binary instanceof Expression.Divide && ((Expression.Constant) binary.right).value == 0) {
+                    // Keep the division so that evaluating it still reports the error
+                    return expression;
+                }
+                return new Expression.Constant(expression.evaluate());
+            }
+        }
+        return expression;
+    }
+
+    private static Expression eliminateCommonSubexpressions(Expression expression, int variableCount) {
+        Map<Object, Expression> interned = new HashMap<>();
+        Expression root = intern(expression, interned);
+
+        // Count references per distinct subtree, visiting the children of each subtree only once
+        Map<Expression, Integer> references = new IdentityHashMap<>();
+        List<Expression> postOrder = new ArrayList<>();
+        countReferences(root, references, postOrder);
+
+        Map<Expression, Integer> slots = new IdentityHashMap<>();
+        List<Expression> shared = new ArrayList<>();
+        for (Expression node : postOrder) {
+            if (node != root && references.get(node) > 1 && cost(node) >= SHARING_THRESHOLD) {
+                slots.put(node, variableCount + shared.size());
+                shared.add(node);
+            }
+        }
+        if (shared.isEmpty()) {
+            return root;
+        }
+        Expression[] definitions = new Expression[shared.size()];
+        for (int i = 0; i < definitions.length; i++) {
+            definitions[i] = replaceShared(shared.get(i), slots, true);
+        }
+        return new Expression.Program(variableCount, definitions, replaceShared(root, slots, true));
+    }
+
+    /**
+    * Rebuilds the tree so that structurally equal subtrees are the same object.
+    * Keys hold the already interned children, which compare by identity.
+    */
+    private static Expression intern(Expression expression, Map<Object, Expression> interned) {
+        Object key;
+        Expression node = expression;
+        if (expression instanceof Expression.Constant) {
+            key = List.of(Expression.Constant.class, Double.doubleToLongBits(((Expression.Constant) expression).value));
+        } else if (expression instanceof Expression.Variable) {
+            key = List.of(Expression.Variable.class, ((Expression.Variable) expression).slot);
+        } else if (expression instanceof Expression.Unary) {
+            Expression.Unary unary = (Expression.Unary) expression;
+            Expression operand = intern(unary.operand, interned);
+            node = withOperand(unary, operand);
+            int exponent = unary instanceof Expression.IntegerPower ? ((Expression.IntegerPower) unary).exponent : 0;
+            key = List.of(unary.getClass(), operand, exponent);
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            Expression left = intern(binary.left, interned);
+            Expression right = intern(binary.right, interned);
+            node = withOperands(binary, left, right);
+            key = List.of(binary.getClass(), left, right);
+        } else {
+            return expression;
+        }
+        Expression existing = interned.putIfAbsent(key, node);
+        return existing != null ? existing : node;
+    }
+
+    private static void countReferences(Expression node, Map<Expression, Integer> references, List<Expression> postOrder) {
+        Integer count = references.get(node);
+        references.put(node, count == null ? 1 : count + 1);
+        if (count != null) {
+            return;
+        }
+        if (node instanceof Expression.Unary) {
+            countReferences(((Expression.Unary) node).operand, references, postOrder);
+        } else if (node instanceof Expression.Binary) {
+            countReferences(((Expression.Binary) node).left, references, postOrder);
+            countReferences(((Expression.Binary) node).right, references, postOrder);
+        }
+        postOrder.add(node);
+    }
+
+    /**
+    * Rebuilds a subtree with every shared subtree below it replaced by a reference to its slot.
+    * The node itself is kept when {@code top} is true, which is how the shared definitions are built.
+    */
+    private static Expression replaceShared(Expression node, Map<Expression, Integer> slots, boolean top) {
+        Integer slot = slots.get(node);
+        if (slot != null && !top) {
+            return new Expression.Variable("$" + slot, slot);
+        }
+        if (node instanceof Expression.Unary) {
+            Expression.Unary unary = (Expression.Unary) node;
+            return withOperand(unary, replaceShared(unary.operand, slots, false));
+        } else if (node instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) node;
+            return withOperands(binary, replaceShared(binary.left, slots, false), replaceShared(binary.right, slots, false));
+        }
+        return node;
+    }
+
+    /**
+    * Estimates the cost of evaluating a subtree, in units of a floating-point addition.
+    */
+    static int cost(Expression node) {
+        if (node instanceof Expression.Unary) {
+            Expression.Unary unary = (Expression.Unary) node;
+            int own = node instanceof Expression.Negate ? 1 : node instanceof Expression.IntegerPower ? 2 : 20;
+            return own + cost(unary.operand);
+        } else if (node instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) node;
+            int own = node instanceof Expression.Add || node instanceof Expression.Subtract || node instanceof Expression.Multiply ? 1
+                    : node instanceof Expression.Divide ? 4 : 20;
+            return own + cost(binary.left) + cost(binary.right);
+        }
+        return 0;
+    }
+
+    static int maxSlot(Expression expression) {
+        if (expression instanceof Expression.Variable) {
+            return ((Expression.Variable) expression).slot;
+        } else if (expression instanceof Expression.Unary) {
+            return maxSlot(((Expression.Unary) expression).operand);
+        } else if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            return Math.max(maxSlot(binary.left), maxSlot(binary.right));
+        }
+        return -1;
+    }
+
+    /**
+    * Creates a node of the same kind as {@code unary} with another operand.
+    */
+    static Expression withOperand(Expression.Unary unary, Expression operand) {
+        if (operand == unary.operand) {
+            return unary;
+        } else if (unary instanceof Expression.Negate) {
+            return new Expression.Negate(operand);
+        } else if (unary instanceof Expression.Sin) {
+            return new Expression.Sin(operand);
+        } else if (unary instanceof Expression.Cos) {
+            return new Expression.Cos(operand);
+        } else if (unary instanceof Expression.Tan) {
+            return new Expression.Tan(operand);
+        } else if (unary instanceof Expression.Ln) {
+            return new Expression.Ln(operand);
+        } else if (unary instanceof Expression.IntegerPower) {
+            return new Expression.IntegerPower(operand, ((Expression.IntegerPower) unary).exponent);
+        }
+        throw new IllegalArgumentException("unknown node " + unary.getClass().getName());
+    }
+
+    /**
+    * Creates a node of the same kind as {@code binary} with other operands.
+    */
+    static Expression withOperands(Expression.Binary binary, Expression left, Expression right) {
+        if (left == binary.left && right == binary.right) {
+            return binary;
+        } else if (binary instanceof Expression.Add) {
+            return new Expression.Add(left, right);
+        } else if (binary instanceof Expression.Subtract) {
+            return new Expression.Subtract(left, right);
+        } else if (binary instanceof Expression.Multiply) {
+            return new Expression.Multiply(left, right);
+        } else if (binary instanceof Expression.Divide) {
+            return new Expression.Divide(left, right);
+        } else if (binary instanceof Expression.Power) {
+            return new Expression.Power(left, right);
+        } else if (binary instanceof Expression.Log) {
+            return new Expression.Log(left, right);
+        }
+        throw new IllegalArgumentException("unknown node " + binary.getClass().getName());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes flat JSON objects, whose values are strings, numbers, booleans or null.
+ * That is all a job or a result needs, so no JSON library is required.
+ */
+final class FlatJson {
+
+    private FlatJson() {
+    }
+
+    /**
+    * Parses a flat JSON object.
+    *
+    * @param text the object, such as {@code {"expression":"sin(x)","h":0.01}}
+    * @Returns the values by name: strings unquoted, other values as written, null as null
+    * @Throws IllegalArgumentException if the text is not a flat JSON object
+    */
+    static Map<String, String> parse(String text) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        int[] index = {skipWhitespace(text, 0)};
+        expect(text, index, '{');
+        if (peek(text, index) == '}') {
+            index[0]++;
+        } else {
+            while (true) {
+                String name = readString(text, index);
+                expect(text, index, ':');
+                fields.put(name, peek(text, index) == '"' ? readString(text, index) : readLiteral(text, index));
+                char next = peek(text, index);
+                index[0]++;
+                if (next == '}') {
+                    break;
+                } else if (next != ',') {
+                    throw new IllegalArgumentException("expected , or } at " + (index[0] - 1));
+                }
+            }
+        }
+        if (skipWhitespace(text, index[0]) != text.length()) {
+            throw new IllegalArgumentException("unexpected text after the object");
+        }
+        return fields;
+    }
+
+    /**
+    * Quotes a string as a JSON string literal.
+    */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+    * Writes a number as a JSON value. NaN and the infinities have no JSON form and are written as strings.
+    */
+    static String number(double value) {
+        return Double.isFinite(value) ? Double.toString(value) : quote(Double.toString(value));
+    }
+
+    private static String readString(String text, int[] index) {
+        expect(text, index, '"');
+        StringBuilder value = new StringBuilder();
+        int i = index[0];
+        while (true) {
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("unterminated string");
+            }
+            char c = text.charAt(i++);
+            if (c == '"') {
+                break;
+            } else if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                throw new IllegalArgumentException("unterminated string");
+            }
+            char escaped = text.charAt(i++);
+            switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("bad unicode escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("bad unicode escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+        index[0] = skipWhitespace(text, i);
+        return value.toString();
+    }
+
+    private static String readLiteral(String text, int[] index) {
+        int start = index[0];
+        int i = start;
+        while (i < text.length() && text.charAt(i) != ',' && text.charAt(i) != '}' && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        String literal = text.substring(start, i);
+        if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+            throw new IllegalArgumentException("expected a flat value at " + start);
+        }
+        index[0] = skipWhitespace(text, i);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static void expect(String text, int[] index, char expected) {
+        if (peek(text, index) != expected) {
+            throw new IllegalArgumentException("expected " + expected + " at " + index[0]);
+        }
+        index[0] = skipWhitespace(text, index[0] + 1);
+    }
+
+    private static char peek(String text, int[] index) {
+        index[0] = skipWhitespace(text, index[0]);
+        return index[0] < text.length() ? text.charAt(index[0]) : '\0';
+    }
+
+    private static int skipWhitespace(String text, int index) {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+}
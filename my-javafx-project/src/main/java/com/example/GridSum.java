@@ -0,0 +1,218 @@
+package com.example;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Weighted sums of a function sampled on an evenly spaced grid.
+ * The grid is generated and evaluated in blocks, so compiled expressions are evaluated
+ * with one batch call per block instead of one call per point.
+ * Sums are accumulated with Neumaier's compensated summation, and the parallel variant
+ * splits the index range into a fixed tree of chunks so its result does not depend on
+ * the number of threads.
+ */
+final class GridSum {
+    /** Number of grid points generated and evaluated per batch. */
+    static final int BLOCK = 4096;
+    /** Number of grid points summed by one fork/join leaf task. */
+    static final int LEAF = 8 * BLOCK;
+
+    private GridSum() {
+    }
+
+    /**
+    * Sums {@code w(i) * f(start + i * h)} for all indices {@code from <= i < to},
+    * where {@code w(i)} is {@code evenWeight} for even and {@code oddWeight} for odd indices.
+    *
+    * @Returns the weighted sum
+    */
+    static double weightedSum(DoubleUnaryOperator f, double start, double h, int from, int to, double evenWeight, double oddWeight) {
+        return leafSum(f, start, h, from, to, evenWeight, oddWeight, ProgressMonitor.current()).value();
+    }
+
+    /**
+    * Computes the same sum as {@link #weightedSum} on a fork/join pool.
+    * The range is halved at block-aligned indices until chunks hold at most {@link #LEAF} points,
+    * and partial sums are combined in that fixed tree order, so the result is bit-for-bit
+    * identical on every run whatever the pool size.
+    *
+    * @Returns the weighted sum
+    */
+    static double parallelWeightedSum(DoubleUnaryOperator f, double start, double h, int from, int to, double evenWeight, double oddWeight, ForkJoinPool pool) {
+        return pool.invoke(new SumTask(f, start, h, from, to, evenWeight, oddWeight, ProgressMonitor.current())).value();
+    }
+
+    /**
+    * Sums {@code f(start + i * h)} for all indices {@code from <= i < to}, separately for each
+    * residue of {@code i} modulo {@code modulus}, so one pass over the grid serves several rules.
+    *
+    * @param modulus the number of residue classes, a divisor of {@link #BLOCK}
+    * @Returns the sums, indexed by residue
+    */
+    static double[] residueSums(DoubleUnaryOperator f, double start, double h, int from, int to, int modulus) {
+        if (modulus < 1 || BLOCK % modulus != 0) {
+            throw new IllegalArgumentException("modulus must divide the block size");
+        }
+        ProgressMonitor monitor = ProgressMonitor.current();
+        double[] x = new double[BLOCK];
+        double[] y = new double[BLOCK];
+        CompensatedSum[] sums = new CompensatedSum[modulus];
+        for (int r = 0; r < modulus; r++) {
+            sums[r] = new CompensatedSum();
+        }
+        for (int i = from; i < to; i += BLOCK) {
+            int length = Math.min(BLOCK, to - i);
+            for (int k = 0; k < length; k++) {
+                x[k] = start + (i + k) * h;
+            }
+            evaluate(f, x, y, length, monitor);
+            int residue = Math.floorMod(i, modulus);
+            for (int k = 0; k < length; k++) {
+                sums[(residue + k) % modulus].add(y[k]);
+            }
+        }
+        double[] result = new double[modulus];
+        for (int r = 0; r < modulus; r++) {
+            result[r] = sums[r].value();
+        }
+        return result;
+    }
+
+    private static CompensatedSum leafSum(DoubleUnaryOperator f, double start, double h, int from, int to, double evenWeight, double oddWeight, ProgressMonitor monitor) {
+        double[] x = new double[BLOCK];
+        double[] y = new double[BLOCK];
+        CompensatedSum evenSum = new CompensatedSum();
+        CompensatedSum oddSum = new CompensatedSum();
+        for (int i = from; i < to; i += BLOCK) {
+            int length = Math.min(BLOCK, to - i);
+            for (int k = 0; k < length; k++) {
+                x[k] = start + (i + k) * h;
+            }
+            evaluate(f, x, y, length, monitor);
+            // BLOCK is even, so y[0] has the parity of i
+            CompensatedSum first = (i & 1) == 0 ? evenSum : oddSum;
+            CompensatedSum second = (i & 1) == 0 ? oddSum : evenSum;
+            for (int k = 0; k < length; k += 2) {
+                first.add(y[k]);
+            }
+            for (int k = 1; k < length; k += 2) {
+                second.add(y[k]);
+            }
+        }
+        CompensatedSum result = new CompensatedSum();
+        result.add(evenWeight * evenSum.value());
+        result.add(oddWeight * oddSum.value());
+        return result;
+    }
+
+    /**
+    * Evaluates {@code f} over the first {@code length} values of {@code x},
+    * using the batch evaluation of compiled expressions when possible.
+    * The evaluations are reported to the monitor of the current thread.
+    *
+    * @Throws CancellationException if the computation was cancelled
+    */
+    static void evaluate(DoubleUnaryOperator f, double[] x, double[] y, int length) {
+        evaluate(f, x, y, length, ProgressMonitor.current());
+    }
+
+    static void evaluate(DoubleUnaryOperator f, double[] x, double[] y, int length, ProgressMonitor monitor) {
+        ProgressMonitor.checkpoint(monitor, length);
+        if (f instanceof Expression) {
+            ((Expression) f).applyAll(x, y, length);
+        } else {
+            for (int k = 0; k < length; k++) {
+                y[k] = f.applyAsDouble(x[k]);
+            }
+        }
+    }
+
+    /**
+    * Returns the number of steps of size {@code h} that cover the interval.
+    * A quotient within rounding error of an integer is rounded to it, otherwise it is rounded up
+    * so that the grid never leaves part of the interval uncovered.
+    *
+    * @Returns the step count, at least 1
+    * @Throws IllegalArgumentException if the step size is not positive
+    */
+    static int stepCount(double h, double intervalStart, double intervalEnd) {
+        if (!(h > 0)) {
+            throw new IllegalArgumentException("step size must be positive");
+        }
+        double steps = Math.abs(intervalEnd - intervalStart) / h;
+        double nearest = Math.rint(steps);
+        double n = Math.abs(steps - nearest) <= 1e-9 * Math.max(1, steps) ? nearest : Math.ceil(steps);
+        if (n > Integer.MAX_VALUE - BLOCK) {
+            throw new IllegalArgumentException("step size too small for the interval");
+        }
+        return Math.max(1, (int) n);
+    }
+
+    /**
+     * Neumaier's variant of Kahan summation: the rounding error of every addition is
+     * collected separately and added back once at the end.
+     */
+    static final class CompensatedSum {
+        private double sum;
+        private double compensation;
+
+        void add(double value) {
+            double t = sum + value;
+            if (Math.abs(sum) >= Math.abs(value)) {
+                compensation += (sum - t) + value;
+            } else {
+                compensation += (value - t) + sum;
+            }
+            sum = t;
+        }
+
+        void add(CompensatedSum other) {
+            add(other.sum);
+            add(other.compensation);
+        }
+
+        double value() {
+            return sum + compensation;
+        }
+    }
+
+    private static final class SumTask extends RecursiveTask<CompensatedSum> {
+        private static final long serialVersionUID = 1L;
+
+        private final DoubleUnaryOperator f;
+        private final double start;
+        private final double h;
+        private final int from;
+        private final int to;
+        private final double evenWeight;
+        private final double oddWeight;
+        private final ProgressMonitor monitor;
+
+        SumTask(DoubleUnaryOperator f, double start, double h, int from, int to, double evenWeight, double oddWeight, ProgressMonitor monitor) {
+            this.f = f;
+            this.start = start;
+            this.h = h;
+            this.from = from;
+            this.to = to;
+            this.evenWeight = evenWeight;
+            this.oddWeight = oddWeight;
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected CompensatedSum compute() {
+            if (to - from <= LEAF) {
+                return leafSum(f, start, h, from, to, evenWeight, oddWeight, monitor);
+            }
+            // Split at a block boundary so the chunks only depend on the range, never on the pool
+            int middle = from + ((to - from) / 2 / BLOCK) * BLOCK;
+            SumTask left = new SumTask(f, start, h, from, middle, evenWeight, oddWeight, monitor);
+            SumTask right = new SumTask(f, start, h, middle, to, evenWeight, oddWeight, monitor);
+            right.fork();
+            CompensatedSum result = left.compute();
+            result.add(right.join());
+            return result;
+        }
+    }
+}
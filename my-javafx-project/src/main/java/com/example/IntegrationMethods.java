@@ -1,46 +1,242 @@
 package com.example;
 
-import java.util.function.Function;
-
-import javax.script.ScriptException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
 
 public class IntegrationMethods {
 
-    public static double MidpointRule(double h, double intervalStart, double intervalEnd, String function) throws ScriptException {
-        Function<Double, Double> parsedFunction = Parser.getFunction(function);
-        double result = 0;
-        for (double i = intervalStart; i < intervalEnd; i += h) {
-            result += parsedFunction.apply(i + h / 2);
-        }
-        return h * result;
+    public static double MidpointRule(double h, double intervalStart, double intervalEnd, String function) {
+        return MidpointRule(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double MidpointRule(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        return midpoint(h, intervalStart, intervalEnd, f, null);
+    }
+
+    public static double TrapezoidalRule(double h,double intervalStart, double intervalEnd, String function) {
+        return TrapezoidalRule(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double TrapezoidalRule(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        return trapezoidal(h, intervalStart, intervalEnd, f, null);
+    }
+
+    public static double SimpsonRule(double h, double intervalStart, double intervalEnd, String function) {
+        return SimpsonRule(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double SimpsonRule(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        return simpson(h, intervalStart, intervalEnd, f, null);
+    }
+
+    /*
+     * Gauss-Legendre rules. The single-panel rule applies the n-point rule to the whole interval,
+     * the composite rule applies it to every panel of width h. Nodes and weights are computed
+     * once per order and cached.
+     */
+
+    public static double GaussLegendreRule(int order, double intervalStart, double intervalEnd, String function) {
+        return GaussLegendreRule(order, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double GaussLegendreRule(int order, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        double result = GaussLegendre.of(order).integrate(f, intervalStart, intervalEnd, 1);
+        Metrics.end(event, "gauss-legendre", intervalEnd - intervalStart, 1, intervalStart, intervalEnd, order);
+        return result;
+    }
+
+    public static double CompositeGaussLegendreRule(double h, int order, double intervalStart, double intervalEnd, String function) {
+        return CompositeGaussLegendreRule(h, order, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double CompositeGaussLegendreRule(double h, int order, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        int n = GridSum.stepCount(h, intervalStart, intervalEnd);
+        double result = GaussLegendre.of(order).integrate(f, intervalStart, intervalEnd, n);
+        Metrics.end(event, "gauss-legendre", h, n, intervalStart, intervalEnd, (long) order * n);
+        return result;
+    }
+
+    /*
+     * Parallel variants. The interval is split into index-based chunks on the common
+     * fork/join pool and the chunk sums are combined in a fixed order, so the result is
+     * the same on every run regardless of the number of cores.
+     */
+
+    public static double ParallelMidpointRule(double h, double intervalStart, double intervalEnd, String function) {
+        return ParallelMidpointRule(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double ParallelMidpointRule(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        return midpoint(h, intervalStart, intervalEnd, f, ForkJoinPool.commonPool());
+    }
+
+    public static double ParallelTrapezoidalRule(double h, double intervalStart, double intervalEnd, String function) {
+        return ParallelTrapezoidalRule(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double ParallelTrapezoidalRule(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        return trapezoidal(h, intervalStart, intervalEnd, f, ForkJoinPool.commonPool());
+    }
+
+    public static double ParallelSimpsonRule(double h, double intervalStart, double intervalEnd, String function) {
+        return ParallelSimpsonRule(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static double ParallelSimpsonRule(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        return simpson(h, intervalStart, intervalEnd, f, ForkJoinPool.commonPool());
+    }
+
+    /*
+     * Error-controlled variants. Instead of a fixed step they take an absolute and a relative
+     * tolerance and stop subdividing once max(absoluteTolerance, relativeTolerance * |I|) is met
+     * or maxEvaluations function evaluations have been spent.
+     */
+
+    public static IntegrationResult AdaptiveSimpsonRule(double absoluteTolerance, double relativeTolerance, long maxEvaluations, double intervalStart, double intervalEnd, String function) {
+        return AdaptiveSimpsonRule(absoluteTolerance, relativeTolerance, maxEvaluations, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
     }
 
-    public static double TrapezoidalRule(double h,double intervalStart, double intervalEnd, String function) throws ScriptException {
-        Function<Double, Double> parsedFunction = Parser.getFunction(function);
-        double result = 0.5 * (parsedFunction.apply(intervalStart) + parsedFunction.apply(intervalEnd));
-        
-        int n = (int) ((intervalEnd - intervalStart) / h);
-        for (int i = 1; i < n; i++) {
-            double x = intervalStart + i * h;
-            result += parsedFunction.apply(x);
+    public static IntegrationResult AdaptiveSimpsonRule(double absoluteTolerance, double relativeTolerance, long maxEvaluations, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        IntegrationResult result = AdaptiveQuadrature.simpson(f, intervalStart, intervalEnd, absoluteTolerance, relativeTolerance, maxEvaluations);
+        Metrics.end(event, "adaptive-simpson", absoluteTolerance, 0, intervalStart, intervalEnd, result.getEvaluations());
+        return result;
+    }
+
+    public static IntegrationResult GaussKronrodRule(double absoluteTolerance, double relativeTolerance, long maxEvaluations, double intervalStart, double intervalEnd, String function) {
+        return GaussKronrodRule(absoluteTolerance, relativeTolerance, maxEvaluations, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static IntegrationResult GaussKronrodRule(double absoluteTolerance, double relativeTolerance, long maxEvaluations, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        IntegrationResult result = AdaptiveQuadrature.gaussKronrod(f, intervalStart, intervalEnd, absoluteTolerance, relativeTolerance, maxEvaluations);
+        Metrics.end(event, "gauss-kronrod", absoluteTolerance, 0, intervalStart, intervalEnd, result.getEvaluations());
+        return result;
+    }
+
+    public static IntegrationResult RombergRule(double absoluteTolerance, double relativeTolerance, int maxLevels, double intervalStart, double intervalEnd, String function) {
+        return RombergRule(absoluteTolerance, relativeTolerance, maxLevels, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static IntegrationResult RombergRule(double absoluteTolerance, double relativeTolerance, int maxLevels, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        IntegrationResult result = Romberg.integrate(f, intervalStart, intervalEnd, absoluteTolerance, relativeTolerance, maxLevels);
+        Metrics.end(event, "romberg", absoluteTolerance, 0, intervalStart, intervalEnd, result.getEvaluations());
+        return result;
+    }
+
+    /*
+     * Comparison of the midpoint, trapezoidal and Simpson's rules from one pass over a shared grid,
+     * with Richardson error estimates for each. The step count is rounded up to an even number so
+     * all three rules use the same panels.
+     */
+
+    public static RuleComparison CompareRules(double h, double intervalStart, double intervalEnd, String function) {
+        return CompareRules(h, intervalStart, intervalEnd, ExpressionCache.shared().get(function));
+    }
+
+    public static RuleComparison CompareRules(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        RuleComparison comparison = RuleComparison.compute(h, intervalStart, intervalEnd, f);
+        Metrics.end(event, "compare-rules", h, GridSum.stepCount(h, intervalStart, intervalEnd), intervalStart, intervalEnd, comparison.getEvaluations());
+        return comparison;
+    }
+
+    /*
+     * Integration over a box, with the bounds of axis d in lower[d] and upper[d]. Expressions given
+     * as text use the variables x, y, z, u, v, w (x1, x2, ... beyond six dimensions) unless other
+     * names are given. The nested rules apply a one-dimensional rule along every axis and suit two
+     * or three dimensions; quasi-Monte Carlo integration suits any dimension the sequence supports,
+     * with the standard error of 16 randomized replicates as its error estimate.
+     */
+
+    public static double NestedSimpsonRule(double h, double[] lower, double[] upper, String function, String... variableNames) {
+        return NestedSimpsonRule(h, lower, upper, multivariate(function, lower.length, variableNames));
+    }
+
+    public static double NestedSimpsonRule(double h, double[] lower, double[] upper, ToDoubleFunction<double[]> f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        double result = Cubature.nestedSimpson(f, lower, upper, h, ForkJoinPool.commonPool());
+        long evaluations = Cubature.nestedEvaluations(lower, upper, h, 0, true);
+        Metrics.end(event, "nested-simpson", h, evaluations, Double.NaN, Double.NaN, evaluations);
+        return result;
+    }
+
+    public static double NestedGaussLegendreRule(double h, int order, double[] lower, double[] upper, String function, String... variableNames) {
+        return NestedGaussLegendreRule(h, order, lower, upper, multivariate(function, lower.length, variableNames));
+    }
+
+    public static double NestedGaussLegendreRule(double h, int order, double[] lower, double[] upper, ToDoubleFunction<double[]> f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        double result = Cubature.nestedGaussLegendre(f, lower, upper, h, order, ForkJoinPool.commonPool());
+        long evaluations = Cubature.nestedEvaluations(lower, upper, h, order, false);
+        Metrics.end(event, "nested-gauss-legendre", h, evaluations, Double.NaN, Double.NaN, evaluations);
+        return result;
+    }
+
+    public static IntegrationResult QuasiMonteCarloRule(QuasiRandomSequence sequence, double absoluteTolerance, double relativeTolerance, long maxEvaluations,
+            double[] lower, double[] upper, String function, String... variableNames) {
+        return QuasiMonteCarloRule(sequence, absoluteTolerance, relativeTolerance, maxEvaluations, lower, upper, multivariate(function, lower.length, variableNames));
+    }
+
+    public static IntegrationResult QuasiMonteCarloRule(QuasiRandomSequence sequence, double absoluteTolerance, double relativeTolerance, long maxEvaluations,
+            double[] lower, double[] upper, ToDoubleFunction<double[]> f) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        IntegrationResult result = Cubature.quasiMonteCarlo(sequence, f, lower, upper, absoluteTolerance, relativeTolerance, maxEvaluations,
+                Cubature.SEED, ForkJoinPool.commonPool());
+        Metrics.end(event, sequence == QuasiRandomSequence.SOBOL ? "quasi-monte-carlo-sobol" : "quasi-monte-carlo-halton",
+                absoluteTolerance, result.getEvaluations(), Double.NaN, Double.NaN, result.getEvaluations());
+        return result;
+    }
+
+    private static ToDoubleFunction<double[]> multivariate(String function, int dimensions, String[] variableNames) {
+        String[] names = variableNames.length == 0 ? Cubature.variableNames(dimensions) : variableNames;
+        if (names.length != dimensions) {
+            throw new IllegalArgumentException("expected " + dimensions + " variable names but found " + names.length);
         }
-        
+        return ExpressionCache.shared().get(function, names)::evaluate;
+    }
+
+    private static double midpoint(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f, ForkJoinPool pool) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        int n = GridSum.stepCount(h, intervalStart, intervalEnd);
+        h = (intervalEnd - intervalStart) / n;
+        // Midpoints a + (i + 1/2) h for i = 0..n-1, computed from the index
+        double result = h * sum(f, intervalStart + h / 2, h, 0, n, 1, 1, pool);
+        Metrics.end(event, pool == null ? "midpoint" : "parallel-midpoint", h, n, intervalStart, intervalEnd, n);
+        return result;
+    }
+
+    private static double trapezoidal(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f, ForkJoinPool pool) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        int n = GridSum.stepCount(h, intervalStart, intervalEnd);
+        h = (intervalEnd - intervalStart) / n;
+        double result = 0.5 * (f.applyAsDouble(intervalStart) + f.applyAsDouble(intervalEnd));
+        result += sum(f, intervalStart, h, 1, n, 1, 1, pool);
+        Metrics.end(event, pool == null ? "trapezoidal" : "parallel-trapezoidal", h, n, intervalStart, intervalEnd, n + 1L);
         return h * result;
     }
 
-    public static double SimpsonRule(double h, double intervalStart, double intervalEnd, String function) throws ScriptException {
-        Function<Double, Double> parsedFunction = Parser.getFunction(function);
-        int n = (int) ((intervalEnd - intervalStart) / h);
+    private static double simpson(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f, ForkJoinPool pool) {
+        Metrics.IntegrationEvent event = Metrics.beginIntegration();
+        int n = GridSum.stepCount(h, intervalStart, intervalEnd);
         if (n % 2 != 0) {
             n++;
         }
         h = (intervalEnd - intervalStart) / n;
-        double sum = parsedFunction.apply(intervalStart) + parsedFunction.apply(intervalEnd);
+        double sum = f.applyAsDouble(intervalStart) + f.applyAsDouble(intervalEnd);
+        sum += sum(f, intervalStart, h, 1, n, 2, 4, pool);
+        Metrics.end(event, pool == null ? "simpson" : "parallel-simpson", h, n, intervalStart, intervalEnd, n + 1L);
+        return sum * h / 3;
+    }
 
-        for (int i = 1; i < n; i++) {
-            double x = intervalStart + i * h;
-            sum += (i % 2 == 0 ? 2 : 4) * parsedFunction.apply(x);
+    private static double sum(DoubleUnaryOperator f, double start, double h, int from, int to, double evenWeight, double oddWeight, ForkJoinPool pool) {
+        if (pool == null) {
+            return GridSum.weightedSum(f, start, h, from, to, evenWeight, oddWeight);
         }
-        return sum * h / 3;
+        return GridSum.parallelWeightedSum(f, start, h, from, to, evenWeight, oddWeight, pool);
     }
 }
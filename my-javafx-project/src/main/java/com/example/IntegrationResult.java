@@ -0,0 +1,45 @@
+package com.example;
+
+/**
+ * The outcome of an error-controlled integration: the value, an estimate of its absolute
+ * error and the number of function evaluations it took.
+ */
+public final class IntegrationResult {
+    private final double value;
+    private final double errorEstimate;
+    private final long evaluations;
+    private final boolean converged;
+
+    public IntegrationResult(double value, double errorEstimate, long evaluations, boolean converged) {
+        this.value = value;
+        this.errorEstimate = errorEstimate;
+        this.evaluations = evaluations;
+        this.converged = converged;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getErrorEstimate() {
+        return errorEstimate;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+    * Tells whether the requested tolerance was met before the evaluation budget ran out.
+    *
+    * @Returns true if the error estimate is within the tolerance
+    */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public String toString() {
+        return value + " +/- " + errorEstimate + " (" + evaluations + " evaluations" + (converged ? ")" : ", not converged)");
+    }
+}
@@ -0,0 +1,115 @@
+package com.example;
+
+import java.util.Map;
+
+/**
+ * One calculation of a batch: an expression in x, a method and its numeric inputs.
+ * For derivatives the point is stored in {@code a} and {@code b} is NaN.
+ */
+public final class Job {
+    private final long line;
+    private final String expression;
+    private final JobMethod method;
+    private final double h;
+    private final double a;
+    private final double b;
+
+    public Job(long line, String expression, JobMethod method, double h, double a, double b) {
+        this.line = line;
+        this.expression = expression;
+        this.method = method;
+        this.h = h;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+    * Builds a job from named fields, as read from a CSV row or a JSON object.
+    * Recognized names are {@code expression}, {@code method}, {@code h}, {@code a}, {@code b}
+    * and {@code point}, which is an alias of {@code a} for derivatives.
+    *
+    * @param line the line number of the job in its file
+    * @param fields the field values by name
+    * @Returns the job
+    * @Throws IllegalArgumentException if a field the method needs is missing or not a number
+    */
+    static Job of(long line, Map<String, String> fields) {
+        String expression = required(fields, "expression");
+        JobMethod method = JobMethod.fromName(required(fields, "method"));
+        double h = Double.NaN;
+        double a;
+        double b = Double.NaN;
+        if (method.getKind() != JobMethod.Kind.EXACT_DERIVATIVE) {
+            h = number(fields, "h");
+        }
+        if (method.getKind() == JobMethod.Kind.INTEGRAL) {
+            a = number(fields, "a");
+            b = number(fields, "b");
+        } else {
+            a = number(fields, isPresent(fields, "point") ? "point" : "a");
+        }
+        return new Job(line, expression, method, h, a, b);
+    }
+
+    /**
+    * Runs the calculation, or looks up its result if the shared {@link ResultCache} holds it.
+    *
+    * @Returns the result
+    * @Throws IllegalArgumentException if the expression is malformed or an input is out of range
+    * @Throws ArithmeticException if the expression divides by zero
+    */
+    public double run() {
+        ResultCache cache = ResultCache.shared();
+        return cache == null ? method.compute(this) : cache.get(this);
+    }
+
+    /** The compiled expression, shared through the expression cache. */
+    Expression function() {
+        return ExpressionCache.shared().get(expression);
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public JobMethod getMethod() {
+        return method;
+    }
+
+    public double getH() {
+        return h;
+    }
+
+    public double getA() {
+        return a;
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    private static boolean isPresent(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value != null && !value.trim().isEmpty();
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        if (!isPresent(fields, name)) {
+            throw new IllegalArgumentException("missing " + name);
+        }
+        return fields.get(name).trim();
+    }
+
+    private static double number(Map<String, String> fields, String name) {
+        String value = required(fields, name);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " is not a number: " + value);
+        }
+    }
+}
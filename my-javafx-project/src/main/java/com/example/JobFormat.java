@@ -0,0 +1,183 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The line formats of job and result files.
+ * <ul>
+ * <li>CSV: one job per row. An optional header row names the columns; without one the columns are
+ * {@code expression,method,h,a,b}. Fields containing commas, such as {@code "log(2,x)"}, are double-quoted.
+ * Results are written as {@code line,value,error}.</li>
+ * <li>JSON Lines: one flat object per line with the fields {@code expression}, {@code method}, {@code h},
+ * {@code a}, {@code b} or {@code point}. Results are written as {@code {"line":1,"value":0.5}} or
+ * {@code {"line":1,"error":"..."}}.</li>
+ * </ul>
+ */
+public enum JobFormat {
+    CSV {
+        @Override
+        Map<String, String> fields(String text, String[] columns) {
+            List<String> values = splitCsv(text);
+            if (values.size() > columns.length) {
+                throw new IllegalArgumentException("expected at most " + columns.length + " fields but found " + values.size());
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                fields.put(columns[i], values.get(i));
+            }
+            return fields;
+        }
+
+        @Override
+        String[] columns(String firstLine) {
+            List<String> names = splitCsv(firstLine);
+            String[] columns = new String[names.size()];
+            boolean header = false;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = names.get(i).trim().toLowerCase(Locale.ROOT);
+                header |= columns[i].equals("expression");
+            }
+            return header ? columns : null;
+        }
+
+        @Override
+        String header() {
+            return "line,value,error";
+        }
+
+        @Override
+        String result(long line, double value) {
+            return line + "," + value + ",";
+        }
+
+        @Override
+        String error(long line, String message) {
+            return line + ",," + quoteCsv(message);
+        }
+    },
+    JSONL {
+        @Override
+        Map<String, String> fields(String text, String[] columns) {
+            return FlatJson.parse(text);
+        }
+
+        @Override
+        String[] columns(String firstLine) {
+            return null;
+        }
+
+        @Override
+        String header() {
+            return null;
+        }
+
+        @Override
+        String result(long line, double value) {
+            return "{\"line\":" + line + ",\"value\":" + FlatJson.number(value) + "}";
+        }
+
+        @Override
+        String error(long line, String message) {
+            return "{\"line\":" + line + ",\"error\":" + FlatJson.quote(message) + "}";
+        }
+    };
+
+    /** The CSV columns when the file has no header row. */
+    static final String[] DEFAULT_COLUMNS = {"expression", "method", "h", "a", "b"};
+
+    /**
+    * Splits a line into named fields.
+    *
+    * @param text the line
+    * @param columns the column names, for CSV
+    * @Returns the field values by name
+    * @Throws IllegalArgumentException if the line is malformed
+    */
+    abstract Map<String, String> fields(String text, String[] columns);
+
+    /**
+    * Reads the column names from the first line of a file.
+    *
+    * @Returns the column names, or null if the line is not a header
+    */
+    abstract String[] columns(String firstLine);
+
+    /**
+    * Returns the first line of a result file.
+    *
+    * @Returns the header, or null if the format has none
+    */
+    abstract String header();
+
+    abstract String result(long line, double value);
+
+    abstract String error(long line, String message);
+
+    /**
+    * Parses one job.
+    *
+    * @Throws IllegalArgumentException if the line is not a valid job
+    */
+    Job parse(long line, String text, String[] columns) {
+        return Job.of(line, fields(text, columns));
+    }
+
+    /**
+    * Chooses the format from a file name: {@code .jsonl} and {@code .json} are JSON Lines, anything else is CSV.
+    */
+    static JobFormat forFileName(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jsonl") || lower.endsWith(".json") ? JSONL : CSV;
+    }
+
+    /**
+    * Looks up a format by name, {@code csv} or {@code jsonl}.
+    *
+    * @Throws IllegalArgumentException if there is no such format
+    */
+    static JobFormat fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static String quoteCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,141 @@
+package com.example;
+
+/**
+ * The calculations a {@link Job} can ask for, by the name used in job files.
+ * Fixed-step integration rules take a step size h and an interval [a, b]; the error-controlled rules
+ * read h as their absolute and relative tolerance. Derivatives are taken at a point, the
+ * finite-difference ones with step size h.
+ */
+public enum JobMethod {
+    SIMPSON("simpson", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.SimpsonRule(job.getH(), job.getA(), job.getB(), job.function());
+        }
+    },
+    TRAPEZOIDAL("trapezoidal", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.TrapezoidalRule(job.getH(), job.getA(), job.getB(), job.function());
+        }
+    },
+    MIDPOINT("midpoint", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.MidpointRule(job.getH(), job.getA(), job.getB(), job.function());
+        }
+    },
+    GAUSS_LEGENDRE("gauss-legendre", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.CompositeGaussLegendreRule(job.getH(), 5, job.getA(), job.getB(), job.function());
+        }
+    },
+    ADAPTIVE_SIMPSON("adaptive-simpson", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.AdaptiveSimpsonRule(job.getH(), job.getH(), MAX_EVALUATIONS, job.getA(), job.getB(), job.function()).getValue();
+        }
+    },
+    GAUSS_KRONROD("gauss-kronrod", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.GaussKronrodRule(job.getH(), job.getH(), MAX_EVALUATIONS, job.getA(), job.getB(), job.function()).getValue();
+        }
+    },
+    ROMBERG("romberg", 1, Kind.INTEGRAL) {
+        @Override
+        double compute(Job job) {
+            return IntegrationMethods.RombergRule(job.getH(), job.getH(), MAX_ROMBERG_LEVELS, job.getA(), job.getB(), job.function()).getValue();
+        }
+    },
+    FIRST_DERIVATIVE("first-derivative", 1, Kind.DERIVATIVE) {
+        @Override
+        double compute(Job job) {
+            return DerivationMethods.firstDerivative(job.getH(), job.getA(), job.function());
+        }
+    },
+    FIRST_DERIVATIVE_5POINT("first-derivative-5point", 1, Kind.DERIVATIVE) {
+        @Override
+        double compute(Job job) {
+            return DerivationMethods.firstDerivative5point(job.getH(), job.getA(), job.function());
+        }
+    },
+    SECOND_DERIVATIVE("second-derivative", 1, Kind.DERIVATIVE) {
+        @Override
+        double compute(Job job) {
+            return DerivationMethods.secondDerivative(job.getH(), job.getA(), job.function());
+        }
+    },
+    EXACT_FIRST_DERIVATIVE("exact-first-derivative", 1, Kind.EXACT_DERIVATIVE) {
+        @Override
+        double compute(Job job) {
+            return DerivationMethods.exactFirstDerivative(job.getA(), job.getExpression());
+        }
+    },
+    EXACT_SECOND_DERIVATIVE("exact-second-derivative", 1, Kind.EXACT_DERIVATIVE) {
+        @Override
+        double compute(Job job) {
+            return DerivationMethods.exactSecondDerivative(job.getA(), job.getExpression());
+        }
+    };
+
+    /** Evaluation budget of the adaptive rules. */
+    static final long MAX_EVALUATIONS = 10_000_000;
+    static final int MAX_ROMBERG_LEVELS = 25;
+
+    /** Which inputs a method needs besides the expression. */
+    enum Kind {
+        /** Step size h and interval [a, b]. */
+        INTEGRAL,
+        /** Step size h and point. */
+        DERIVATIVE,
+        /** Point only. */
+        EXACT_DERIVATIVE
+    }
+
+    private final String methodName;
+    private final int version;
+    private final Kind kind;
+
+    JobMethod(String methodName, int version, Kind kind) {
+        this.methodName = methodName;
+        this.version = version;
+        this.kind = kind;
+    }
+
+    abstract double compute(Job job);
+
+    /** The name of the method in job files. */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+    * Returns the version of the method's implementation. It must be raised whenever a change to the
+    * method can change its results, so that results cached by {@link ResultCache} before the change are not served.
+    */
+    public int getVersion() {
+        return version;
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    /**
+    * Looks up a method by its name in job files, ignoring case.
+    *
+    * @param name the name, such as {@code simpson} or {@code first-derivative}
+    * @Returns the method
+    * @Throws IllegalArgumentException if there is no method with that name
+    */
+    public static JobMethod fromName(String name) {
+        for (JobMethod method : values()) {
+            if (method.methodName.equalsIgnoreCase(name.trim())) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("unknown method: " + name);
+    }
+}
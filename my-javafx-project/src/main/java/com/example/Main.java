@@ -1,10 +1,14 @@
 package com.example;
 
-import javax.script.ScriptException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javafx.application.Application;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.Tab;
@@ -12,10 +16,21 @@ import javafx.scene.control.TabPane;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
 public class Main extends Application {
 
+    // Calculations run here so the window stays responsive; daemon threads do not keep the JVM alive
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "calculation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CalculationRunner integralRunner = new CalculationRunner(executor);
+    private final CalculationRunner derivativeRunner = new CalculationRunner(executor);
+    private VisualizerPane visualizer;
+
     @Override
     public void start(Stage primaryStage) {
         TabPane tabPane = new TabPane();
@@ -25,13 +40,18 @@ public class Main extends Application {
         calculatorTab.setClosable(false);
         Tab visualizerTab = new Tab("Visualizer");
         visualizerTab.setClosable(false);
-        tabPane.getTabs().addAll(calculatorTab, menuTab);
+        Tab metricsTab = new Tab("Metrics");
+        metricsTab.setClosable(false);
+        tabPane.getTabs().addAll(calculatorTab, menuTab, visualizerTab, metricsTab);
 
         GridPane calculatorGrid = createCalculatorGrid();
         GridPane derivativeGrid = createDerivativeGrid();
 
         calculatorTab.setContent(calculatorGrid);
         menuTab.setContent(derivativeGrid);
+        visualizer = new VisualizerPane(new CalculationRunner(executor));
+        visualizerTab.setContent(visualizer);
+        metricsTab.setContent(createMetricsGrid());
 
         BorderPane root = new BorderPane();
         root.setCenter(tabPane);
@@ -41,6 +61,16 @@ public class Main extends Application {
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        integralRunner.cancel();
+        derivativeRunner.cancel();
+        if (visualizer != null) {
+            visualizer.stop();
+        }
+        executor.shutdownNow();
+    }
+
     private GridPane createDerivativeGrid() {
         GridPane derivativeGrid = new GridPane();
         derivativeGrid.setHgap(10);
@@ -48,7 +78,7 @@ public class Main extends Application {
 
         Label label1 = new Label("Choose Method");
         ComboBox<String> comboBox = new ComboBox<>();
-        comboBox.getItems().addAll("First Derivative 3point","First Derivative 5point", "Second Derivative");
+        comboBox.getItems().addAll("First Derivative 3point","First Derivative 5point", "Second Derivative", "First Derivative (exact)", "Second Derivative (exact)");
         comboBox.setValue("First Derivative 3point");
 
         Label label2 = new Label("step size");
@@ -65,47 +95,45 @@ public class Main extends Application {
         Label resultLabel = new Label();
 
         Button calculateButton = new Button("Calculate");
-        calculateButton.setOnAction(e -> {
-            try {
-                calculateResultDerivative(comboBox.getValue(), textField1.getText(), textField2.getText(), textField3.getText(), resultLabel);
-            } catch (ScriptException e1) {
-                // TODO Auto-generated catch block
-                e1.printStackTrace();
-            }
-        });
+        calculateButton.setOnAction(e -> calculateResultDerivative(comboBox.getValue(), textField1.getText(), textField2.getText(), textField3.getText(), resultLabel));
 
         derivativeGrid.addRow(0, label1, comboBox);
         derivativeGrid.addRow(1, label2, textField1);
         derivativeGrid.addRow(2, label3, textField2);
         derivativeGrid.addRow(3, label4, textField3);
-        derivativeGrid.addRow(2, calculateButton);
+        derivativeGrid.addRow(2, calculateButton, derivativeRunner.cancelButton, derivativeRunner.progressBar);
         derivativeGrid.addRow(3, label5, resultLabel);
 
         return derivativeGrid;
     }
 
-    private void calculateResultDerivative(String method, String stepSize, String pointStr, String function, Label resultLabel) throws ScriptException {
+    private void calculateResultDerivative(String method, String stepSize, String pointStr, String function, Label resultLabel) {
+        double h;
+        double point;
         try {
-            double h = Double.parseDouble(stepSize);
-            double point = Double.parseDouble(pointStr);
+            h = Double.parseDouble(stepSize);
+            point = Double.parseDouble(pointStr);
+        } catch (NumberFormatException ex) {
+            resultLabel.setText("Error: Invalid input");
+            return;
+        }
 
-            double result = 0;
+        derivativeRunner.start(() -> {
             switch (method) {
                 case "First Derivative 3point":
-                    result = DerivationMethods.firstDerivative(h, point, function);
-                    break;
+                    return DerivationMethods.firstDerivative(h, point, function);
                 case "Second Derivative":
-                    result = DerivationMethods.secondDerivative(h, point, function);
-                    break;
+                    return DerivationMethods.secondDerivative(h, point, function);
                 case "First Derivative 5point":
-                    result = DerivationMethods.firstDerivative5point(h, point, function);
-                    break;
+                    return DerivationMethods.firstDerivative5point(h, point, function);
+                case "First Derivative (exact)":
+                    return DerivationMethods.exactFirstDerivative(point, function);
+                case "Second Derivative (exact)":
+                    return DerivationMethods.exactSecondDerivative(point, function);
+                default:
+                    return 0.0;
             }
-
-            resultLabel.setText(String.valueOf(result));
-        } catch (NumberFormatException ex) {
-            resultLabel.setText("Error: Invalid input");
-        }
+        }, 0, result -> resultLabel.setText(String.valueOf(result)), resultLabel);
     }
 
     private GridPane createCalculatorGrid() {
@@ -115,7 +143,7 @@ public class Main extends Application {
 
         Label label1 = new Label("Choose Method");
         ComboBox<String> comboBox = new ComboBox<>();
-        comboBox.getItems().addAll("Simpson's Rule", "Trapezoidal Rule", "Midpoint Rule");
+        comboBox.getItems().addAll("Simpson's Rule", "Trapezoidal Rule", "Midpoint Rule", "Gauss-Legendre (5 point)");
         comboBox.setValue("Simpson's Rule");
 
         Label label2 = new Label("Step Size");
@@ -134,47 +162,186 @@ public class Main extends Application {
         Label label5 = new Label("Result");
         Label resultLabel = new Label();
 
+        Label label6 = new Label("All Methods");
+        GridPane comparisonGrid = new GridPane();
+        comparisonGrid.setHgap(20);
+        comparisonGrid.setVgap(5);
+
         Button calculateButton = new Button("Calculate");
-        calculateButton.setOnAction(e -> {
-            try {
-                calculateResult(comboBox.getValue(),textField2.getText(), aTextField.getText(), bTextField.getText(), textField4.getText(), resultLabel);
-            } catch (ScriptException e1) {
-                // TODO Auto-generated catch block
-                e1.printStackTrace();
-            }
-        });
+        calculateButton.setOnAction(e -> calculateResult(comboBox.getValue(),textField2.getText(), aTextField.getText(), bTextField.getText(), textField4.getText(), resultLabel, comparisonGrid));
 
         calculatorGrid.addRow(0, label1, comboBox);
         calculatorGrid.addRow(1, label2, textField2);
         calculatorGrid.addRow(2, label3, aTextField, bTextField);
         calculatorGrid.addRow(3, label4, textField4);
-        calculatorGrid.addRow(4, calculateButton);
+        calculatorGrid.addRow(4, calculateButton, integralRunner.cancelButton, integralRunner.progressBar);
         calculatorGrid.addRow(5, label5, resultLabel);
+        calculatorGrid.add(label6, 0, 6);
+        calculatorGrid.add(comparisonGrid, 1, 6, 2, 1);
 
         return calculatorGrid;
     }
 
-    private void calculateResult(String method,String StepSize, String intervalStartStr, String intervalEndStr, String function, Label resultLabel) throws ScriptException {
+    private void calculateResult(String method,String StepSize, String intervalStartStr, String intervalEndStr, String function, Label resultLabel, GridPane comparisonGrid) {
+        double h;
+        double intervalStart;
+        double intervalEnd;
+        int n;
         try {
-            double h = Double.parseDouble(StepSize);
-            double intervalStart = Double.parseDouble(intervalStartStr);
-            double intervalEnd = Double.parseDouble(intervalEndStr);
-
-            double result = 0;
-            switch (method) {
-                case "Simpson's Rule":
-                    result = IntegrationMethods.SimpsonRule(h, intervalStart, intervalEnd, function);
-                case "Trapezoidal Rule":
-                    result = IntegrationMethods.TrapezoidalRule(h, intervalStart, intervalEnd, function);
-                    break;
-                case "Midpoint Rule":
-                    result = IntegrationMethods.MidpointRule(h, intervalStart, intervalEnd, function);
-                    break;
-            }
-
-            resultLabel.setText(String.valueOf(result));
+            h = Double.parseDouble(StepSize);
+            intervalStart = Double.parseDouble(intervalStartStr);
+            intervalEnd = Double.parseDouble(intervalEndStr);
+            n = GridSum.stepCount(h, intervalStart, intervalEnd);
         } catch (NumberFormatException ex) {
             resultLabel.setText("Error: Invalid input");
+            return;
+        } catch (IllegalArgumentException ex) {
+            resultLabel.setText("Error: " + ex.getMessage());
+            return;
+        }
+
+        // About 2n + 1 samples for the shared grid, and 5n more only when the Gauss-Legendre rule is selected
+        boolean gaussLegendreSelected = "Gauss-Legendre (5 point)".equals(method);
+        long expectedEvaluations = 2L * n + 1 + (gaussLegendreSelected ? 5L * n : 0);
+        integralRunner.start(() -> {
+            // The three Newton-Cotes rules come from one pass over the same samples
+            RuleComparison comparison = IntegrationMethods.CompareRules(h, intervalStart, intervalEnd, function);
+            double gaussLegendre = gaussLegendreSelected
+                    ? IntegrationMethods.CompositeGaussLegendreRule(h, 5, intervalStart, intervalEnd, function)
+                    : Double.NaN;
+            return new IntegralResults(comparison, gaussLegendre);
+        }, expectedEvaluations, results -> showIntegralResults(method, results, resultLabel, comparisonGrid), resultLabel);
+    }
+
+    private void showIntegralResults(String method, IntegralResults results, Label resultLabel, GridPane comparisonGrid) {
+        RuleComparison comparison = results.comparison;
+        double result = 0;
+        switch (method) {
+            case "Simpson's Rule":
+                result = comparison.getSimpson();
+                break;
+            case "Trapezoidal Rule":
+                result = comparison.getTrapezoidal();
+                break;
+            case "Midpoint Rule":
+                result = comparison.getMidpoint();
+                break;
+            case "Gauss-Legendre (5 point)":
+                result = results.gaussLegendre;
+                break;
+        }
+
+        resultLabel.setText(String.valueOf(result));
+        comparisonGrid.getChildren().clear();
+        comparisonGrid.addRow(0, new Label("Method"), new Label("Result"), new Label("Estimated Error"));
+        comparisonGrid.addRow(1, new Label("Simpson's Rule"), new Label(String.valueOf(comparison.getSimpson())),
+                new Label(String.format("%.3g", comparison.getSimpsonError())));
+        comparisonGrid.addRow(2, new Label("Trapezoidal Rule"), new Label(String.valueOf(comparison.getTrapezoidal())),
+                new Label(String.format("%.3g", comparison.getTrapezoidalError())));
+        comparisonGrid.addRow(3, new Label("Midpoint Rule"), new Label(String.valueOf(comparison.getMidpoint())),
+                new Label(String.format("%.3g", comparison.getMidpointError())));
+        int row = 4;
+        if (!Double.isNaN(results.gaussLegendre)) {
+            comparisonGrid.addRow(row++, new Label("Gauss-Legendre (5 point)"), new Label(String.valueOf(results.gaussLegendre)), new Label(""));
+        }
+        comparisonGrid.addRow(row, new Label("Richardson Extrapolation"), new Label(String.valueOf(comparison.getExtrapolated())), new Label(""));
+    }
+
+    private GridPane createMetricsGrid() {
+        GridPane metricsGrid = new GridPane();
+        metricsGrid.setHgap(10);
+        metricsGrid.setVgap(10);
+
+        CheckBox enabledBox = new CheckBox("Record metrics");
+        enabledBox.setSelected(Metrics.isEnabled());
+        enabledBox.setOnAction(e -> Metrics.setEnabled(enabledBox.isSelected()));
+
+        Label totalsLabel = new Label();
+        GridPane operationsGrid = new GridPane();
+        operationsGrid.setHgap(15);
+        operationsGrid.setVgap(4);
+
+        Button refreshButton = new Button("Refresh");
+        refreshButton.setOnAction(e -> showMetrics(Metrics.snapshot(), totalsLabel, operationsGrid));
+        Button resetButton = new Button("Reset");
+        resetButton.setOnAction(e -> {
+            Metrics.reset();
+            showMetrics(Metrics.snapshot(), totalsLabel, operationsGrid);
+        });
+
+        metricsGrid.addRow(0, enabledBox, refreshButton, resetButton);
+        metricsGrid.add(totalsLabel, 0, 1, 3, 1);
+        metricsGrid.add(operationsGrid, 0, 2, 3, 1);
+        showMetrics(Metrics.snapshot(), totalsLabel, operationsGrid);
+
+        return metricsGrid;
+    }
+
+    private void showMetrics(Metrics.Snapshot snapshot, Label totalsLabel, GridPane operationsGrid) {
+        totalsLabel.setText(String.format("Parsing: %d calls, %s    Integrals: %d calls, %s    Derivatives: %d calls, %s    Evaluations: %d",
+                snapshot.getTotalCalls(Metrics.Kind.PARSE), formatNanos(snapshot.getTotalNanos(Metrics.Kind.PARSE)),
+                snapshot.getTotalCalls(Metrics.Kind.INTEGRAL), formatNanos(snapshot.getTotalNanos(Metrics.Kind.INTEGRAL)),
+                snapshot.getTotalCalls(Metrics.Kind.DERIVATIVE), formatNanos(snapshot.getTotalNanos(Metrics.Kind.DERIVATIVE)),
+                snapshot.getTotalEvaluations()));
+        operationsGrid.getChildren().clear();
+        operationsGrid.addRow(0, new Label("Operation"), new Label("Calls"), new Label("Evaluations"), new Label("Mean"),
+                new Label("p50"), new Label("p90"), new Label("p99"), new Label("Max"), new Label("Distribution"));
+        int row = 1;
+        for (Metrics.Entry entry : snapshot.getEntries()) {
+            operationsGrid.addRow(row++, new Label(entry.getName()), new Label(String.valueOf(entry.getCalls())),
+                    new Label(String.valueOf(entry.getEvaluations())), new Label(formatNanos(Math.round(entry.getMeanNanos()))),
+                    new Label(formatNanos(entry.getP50Nanos())), new Label(formatNanos(entry.getP90Nanos())),
+                    new Label(formatNanos(entry.getP99Nanos())), new Label(formatNanos(entry.getMaxNanos())),
+                    histogram(entry.getHistogram()));
+        }
+    }
+
+    /**
+    * Draws a duration histogram with one bar per power of two, from the shortest to the longest duration seen.
+    */
+    private static Canvas histogram(long[] counts) {
+        Canvas canvas = new Canvas(160, 16);
+        int first = 0;
+        int last = counts.length - 1;
+        while (first < last && counts[first] == 0) {
+            first++;
+        }
+        while (last > first && counts[last] == 0) {
+            last--;
+        }
+        long highest = 1;
+        for (int i = first; i <= last; i++) {
+            highest = Math.max(highest, counts[i]);
+        }
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.STEELBLUE);
+        double width = canvas.getWidth() / Math.max(8, last - first + 1);
+        for (int i = first; i <= last; i++) {
+            double height = canvas.getHeight() * counts[i] / highest;
+            gc.fillRect((i - first) * width, canvas.getHeight() - height, width - 1, height);
+        }
+        return canvas;
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        } else if (nanos < 1_000_000) {
+            return String.format("%.1f us", nanos / 1e3);
+        } else if (nanos < 1_000_000_000) {
+            return String.format("%.1f ms", nanos / 1e6);
+        }
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    private static final class IntegralResults {
+        final RuleComparison comparison;
+        /** NaN unless the Gauss-Legendre rule was selected. */
+        final double gaussLegendre;
+
+        IntegralResults(RuleComparison comparison, double gaussLegendre) {
+            this.comparison = comparison;
+            this.gaussLegendre = gaussLegendre;
         }
     }
 
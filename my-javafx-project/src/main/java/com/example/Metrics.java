@@ -0,0 +1,335 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Opt-in instrumentation of parsing, integration and differentiation.
+ * <p>
+ * While enabled, every call of {@link Parser}, {@link IntegrationMethods} and {@link DerivationMethods}
+ * is timed, its function evaluations are counted, and a JFR event carrying its method and inputs is
+ * emitted, which a flight recording picks up:
+ * <pre>
+ * java -Dintegratewithease.metrics=true -XX:StartFlightRecording=filename=calc.jfr ...
+ * </pre>
+ * Evaluations are counted per call from the number of points the rule samples, so the inner loops
+ * are never touched. While disabled the only cost is one volatile read per call.
+ */
+public final class Metrics {
+    /** The system property that enables metrics at startup. */
+    public static final String PROPERTY = "integratewithease.metrics";
+
+    private static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+    private static final ConcurrentMap<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+    * Forgets all counts and timings recorded so far.
+    */
+    public static void reset() {
+        OPERATIONS.clear();
+    }
+
+    /**
+    * Returns the counts and timings recorded so far, per operation.
+    *
+    * @Returns a snapshot that later calls do not change
+    */
+    public static Snapshot snapshot() {
+        List<Entry> entries = new ArrayList<>();
+        OPERATIONS.forEach((name, operation) -> entries.add(new Entry(name, operation)));
+        entries.sort(Comparator.comparing(Entry::getKind).thenComparing(Entry::getName));
+        return new Snapshot(entries);
+    }
+
+    /*
+     * Probes for the instrumented classes. begin returns null while metrics are disabled, and end
+     * does nothing for a null event, so a call site reads
+     *
+     *     IntegrationEvent event = Metrics.beginIntegration();
+     *     ... compute ...
+     *     Metrics.end(event, "simpson", h, n, a, b, n + 1);
+     */
+
+    static ParseEvent beginParse() {
+        if (!enabled) {
+            return null;
+        }
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    static IntegrationEvent beginIntegration() {
+        if (!enabled) {
+            return null;
+        }
+        IntegrationEvent event = new IntegrationEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    static DerivativeEvent beginDerivative() {
+        if (!enabled) {
+            return null;
+        }
+        DerivativeEvent event = new DerivativeEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    static void end(ParseEvent event, String phase, String expression) {
+        if (event == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - event.startNanos;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.expression = expression;
+            event.commit();
+        }
+        record(phase, Kind.PARSE, nanos, 0);
+    }
+
+    static void end(IntegrationEvent event, String method, double h, long steps, double intervalStart, double intervalEnd, long evaluations) {
+        if (event == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - event.startNanos;
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = method;
+            event.h = h;
+            event.steps = steps;
+            event.intervalStart = intervalStart;
+            event.intervalEnd = intervalEnd;
+            event.evaluations = evaluations;
+            event.commit();
+        }
+        record(method, Kind.INTEGRAL, nanos, evaluations);
+    }
+
+    static void end(DerivativeEvent event, String method, double h, double point, long evaluations) {
+        if (event == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - event.startNanos;
+        event.end();
+        if (event.shouldCommit()) {
+            event.method = method;
+            event.h = h;
+            event.point = point;
+            event.evaluations = evaluations;
+            event.commit();
+        }
+        record(method, Kind.DERIVATIVE, nanos, evaluations);
+    }
+
+    private static void record(String name, Kind kind, long nanos, long evaluations) {
+        Operation operation = OPERATIONS.get(name);
+        if (operation == null) {
+            operation = OPERATIONS.computeIfAbsent(name, key -> new Operation(kind));
+        }
+        operation.latency.record(nanos);
+        operation.evaluations.add(evaluations);
+    }
+
+    /** What an operation does. */
+    public enum Kind {
+        PARSE,
+        INTEGRAL,
+        DERIVATIVE
+    }
+
+    private static final class Operation {
+        final Kind kind;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder evaluations = new LongAdder();
+
+        Operation(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * The counts and timings of one operation, such as {@code parse} or {@code simpson}.
+     * Durations are in nanoseconds.
+     */
+    public static final class Entry {
+        private final String name;
+        private final Kind kind;
+        private final long calls;
+        private final long evaluations;
+        private final long totalNanos;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+        private final long[] histogram;
+
+        Entry(String name, Operation operation) {
+            LatencyHistogram latency = operation.latency;
+            this.name = name;
+            this.kind = operation.kind;
+            this.calls = latency.getCount();
+            this.evaluations = operation.evaluations.sum();
+            this.totalNanos = latency.getTotal();
+            this.p50 = latency.getPercentile(50);
+            this.p90 = latency.getPercentile(90);
+            this.p99 = latency.getPercentile(99);
+            this.max = latency.getMax();
+            this.histogram = latency.getPowerOfTwoCounts();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /** The function evaluations of all calls; 0 for parsing. */
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getMeanNanos() {
+            return calls == 0 ? 0 : (double) totalNanos / calls;
+        }
+
+        public long getP50Nanos() {
+            return p50;
+        }
+
+        public long getP90Nanos() {
+            return p90;
+        }
+
+        public long getP99Nanos() {
+            return p99;
+        }
+
+        public long getMaxNanos() {
+            return max;
+        }
+
+        /**
+        * Returns the distribution of the durations.
+        *
+        * @Returns the number of calls that took between 2^k and 2^(k+1) nanoseconds, at index k
+        */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+    }
+
+    /**
+     * The entries of all operations that were called at least once, ordered by kind and name.
+     */
+    public static final class Snapshot {
+        private final List<Entry> entries;
+
+        Snapshot(List<Entry> entries) {
+            this.entries = Collections.unmodifiableList(entries);
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public long getTotalCalls(Kind kind) {
+            return entries.stream().filter(entry -> entry.kind == kind).mapToLong(Entry::getCalls).sum();
+        }
+
+        public long getTotalEvaluations() {
+            return entries.stream().mapToLong(Entry::getEvaluations).sum();
+        }
+
+        public long getTotalNanos(Kind kind) {
+            return entries.stream().filter(entry -> entry.kind == kind).mapToLong(Entry::getTotalNanos).sum();
+        }
+    }
+
+    /*
+     * JFR events. The start time of each probe is kept in a transient field, which JFR does not record.
+     */
+
+    @Name("com.example.Parse")
+    @Label("Expression Parse")
+    @Category("Calculator")
+    @Description("Parsing or preparing an expression for evaluation")
+    static final class ParseEvent extends jdk.jfr.Event {
+        @Label("Phase")
+        String phase;
+        @Label("Expression")
+        String expression;
+        transient long startNanos;
+    }
+
+    @Name("com.example.Integration")
+    @Label("Integration")
+    @Category("Calculator")
+    static final class IntegrationEvent extends jdk.jfr.Event {
+        @Label("Method")
+        String method;
+        @Label("Step Size")
+        double h;
+        @Label("Steps")
+        long steps;
+        @Label("Interval Start")
+        double intervalStart;
+        @Label("Interval End")
+        double intervalEnd;
+        @Label("Evaluations")
+        long evaluations;
+        transient long startNanos;
+    }
+
+    @Name("com.example.Derivative")
+    @Label("Derivative")
+    @Category("Calculator")
+    static final class DerivativeEvent extends jdk.jfr.Event {
+        @Label("Method")
+        String method;
+        @Label("Step Size")
+        double h;
+        @Label("Point")
+        double point;
+        @Label("Evaluations")
+        long evaluations;
+        transient long startNanos;
+    }
+}
@@ -1,18 +1,23 @@
 package com.example;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Analyzes and evaluates mathematical expressions transmitted as strings.
  * The parser supports operations such as addition, subtraction, multiplication, division, exponentiation and logarithms.
  * The parser also handles variables supplied via a card.
+ * Expressions are turned into an {@link Expression} tree once, which can then be evaluated any number of times.
  */
 public class Parser {
     private String input;
     private int index = 0;
     private Map<String, Double> variables;
+    private List<String> parameters = List.of();
 
     /**
     * Constructs a new Parser instance.
@@ -22,10 +27,21 @@ public class Parser {
     * @param variables a map of variable names to their corresponding values
     */
     public Parser(String input, Map<String, Double> variables) {
-        this.input = input.replaceAll("\\s+", "");
+        this.input = normalize(input);
         this.variables = new HashMap<>(variables);
     }
 
+    /**
+    * Normalizes an expression by removing all whitespace.
+    * Two expressions with the same normalized form compile to the same tree.
+    *
+    * @param input the mathematical expression
+    * @Returns the expression without whitespace
+    */
+    public static String normalize(String input) {
+        return input.replaceAll("\\s+", "");
+    }
+
     /**
     * Analyzes and evaluates the entire expression stored in the input.
     *
@@ -33,7 +49,20 @@ public class Parser {
     * @Throws IllegalArgumentException if unexpected characters or incorrect parts of the expression are present
     */
     public double parse() {
-        double result = parseAddSubtract();
+        return parseExpression().evaluate();
+    }
+
+    /**
+    * Analyzes the entire expression stored in the input and builds its expression tree.
+    * Names listed in {@code parameters} become variables of the tree, all other names are
+    * replaced by their value from the variable map.
+    *
+    * @Returns the root of the expression tree
+    * @Throws IllegalArgumentException if unexpected characters or incorrect parts of the expression are present
+    */
+    private Expression parseExpression() {
+        index = 0;
+        Expression result = parseAddSubtract();
         if (index < input.length()) {
             throw new IllegalArgumentException("unexpected: " + input.charAt(index));
         }
@@ -44,17 +73,17 @@ public class Parser {
     * Analyzes addition and subtraction operations within the expression.
     * This method handles the operations with the lowest priority by processing the terms one after the other.
     *
-    * @Returns the result of the addition/subtraction operations as a double
+    * @Returns the tree of the addition/subtraction operations
     */
-    private double parseAddSubtract() {
-        double result = parseMultiplyDivide();
+    private Expression parseAddSubtract() {
+        Expression result = parseMultiplyDivide();
         while (index < input.length()) {
             if (input.charAt(index) == '+') {
                 index++;
-                result += parseMultiplyDivide();
+                result = new Expression.Add(result, parseMultiplyDivide());
             } else if (input.charAt(index) == '-') {
                 index++;
-                result -= parseMultiplyDivide();
+                result = new Expression.Subtract(result, parseMultiplyDivide());
             } else {
                 break;
             }
@@ -66,22 +95,19 @@ public class Parser {
     * Analyzes multiplication and division operations within the expression.
     * This method processes these operations, which have a higher precedence than addition and subtraction.
     *
-    * @Returns the result of the multiplication/division operations as a double
-    * @throws ArithmeticException if a division by zero occurs
+    * Evaluating the tree throws ArithmeticException if a division by zero occurs.
+    *
+    * @Returns the tree of the multiplication/division operations
     */
-    private double parseMultiplyDivide() {
-        double result = parseExponent();
+    private Expression parseMultiplyDivide() {
+        Expression result = parseExponent();
         while (index < input.length()) {
             if (input.charAt(index) == '*') {
                 index++;
-                result *= parseExponent();
+                result = new Expression.Multiply(result, parseExponent());
             } else if (input.charAt(index) == '/') {
                 index++;
-                double divisor = parseExponent();
-                if (divisor == 0) {
-                    throw new ArithmeticException("division by zero");
-                }
-                result /= divisor;
+                result = new Expression.Divide(result, parseExponent());
             } else {
                 break;
             }
@@ -93,7 +119,7 @@ public class Parser {
     * Analyzes exponentiation operations within the expression.
     * This method processes the operations with the highest priority and handles the right-associativity of the exponentiation.
     *
-    * @Returns the result of the exponentiation operations as a double
+    * @Returns the tree of the exponentiation operations
     * @Throws IllegalArgumentException if the format of the exponentiation is incorrect
     */
     // private double parseExponent() {
@@ -111,12 +137,12 @@ public class Parser {
     //     }
     //     return base;
     // }
-    private double parseExponent() {
-        double base = parseFactor();
+    private Expression parseExponent() {
+        Expression base = parseFactor();
         while (index < input.length() && input.charAt(index) == '^') {
             index++; // Skipping '^'
-            double exponent = parseFactor(); // Parse the exponent directly
-            base = Math.pow(base, exponent);
+            Expression exponent = parseFactor(); // Parse the exponent directly
+            base = new Expression.Power(base, exponent);
         }
         return base;
     }
@@ -126,10 +152,10 @@ public class Parser {
     * Factors can be numbers, variables, sub-expressions or functions such as logarithms. 
     * Processes signs and parenthesized expressions to support complex nested operations.
     *
-    * @Returns the numeric result of the factor evaluation
+    * @Returns the tree of the factor
     * @throws IllegalArgumentException if the factor is incorrectly formed or there are syntax errors
     */
-    private double parseFactor() {
+    private Expression parseFactor() {
         double sign = 1.0; 
         while (index < input.length() && Character.isWhitespace(input.charAt(index))) {
             index++;
@@ -140,7 +166,7 @@ public class Parser {
             index++; // Skipping - 
         }
 
-        double result;
+        Expression result;
         if (index < input.length() && input.charAt(index) == '(') {
             index++; // Skip (
             result = parseAddSubtract();
@@ -150,81 +176,167 @@ public class Parser {
             index++; // Skip )
         } else if (index + 3 < input.length() && input.startsWith("log(", index)) {
             index += 4; // Skipping "log("
-            double base = parseAddSubtract(); // Parsing log base
+            Expression base = parseAddSubtract(); // Parsing log base
             if (index >= input.length() || input.charAt(index) != ',') {
                 throw new IllegalArgumentException("missing comma after log base");
             }
             index++; // Skip ','
-            double value = parseAddSubtract(); // Parsing value for log
+            Expression value = parseAddSubtract(); // Parsing value for log
             if (index >= input.length() || input.charAt(index) != ')') {
                 throw new IllegalArgumentException("missing closing parenthesis for log");
             }
             index++; // Skipping ')'
-            result = Math.log(value) / Math.log(base); 
+            result = new Expression.Log(base, value);
         } else if (index + 3 < input.length() && input.startsWith("sin(", index)) {
             index += 4; // Skipping "sin("
-            double value = parseAddSubtract(); // Parsing the argument of sin
+            Expression value = parseAddSubtract(); // Parsing the argument of sin
             if (index >= input.length() || input.charAt(index) != ')') {
                 throw new IllegalArgumentException("Missing closing parenthesis for sin");
             }
             index++; // Skip ')'
-            result = Math.sin(value);
+            result = new Expression.Sin(value);
         }else if (index + 3 < input.length() && input.startsWith("cos(", index)) {
             index += 4; // Skipping "cos("
-            double value = parseAddSubtract(); // Parsing the argument of cos
+            Expression value = parseAddSubtract(); // Parsing the argument of cos
             if (index >= input.length() || input.charAt(index) != ')') {
                 throw new IllegalArgumentException("Missing closing parenthesis for cos");
             }
             index++; // Skip ')'
-            result = Math.cos(value);
+            result = new Expression.Cos(value);
         }else if (index + 3 < input.length() && input.startsWith("tan(", index)) {
             index += 4; // Skipping "tan("
-            double value = parseAddSubtract(); // Parsing the argument of tan
+            Expression value = parseAddSubtract(); // Parsing the argument of tan
             if (index >= input.length() || input.charAt(index) != ')') {
                 throw new IllegalArgumentException("Missing closing parenthesis for tan");
             }
             index++; // Skip ')'
-            result = Math.tan(value);
+            result = new Expression.Tan(value);
         }else if (index + 2 < input.length() && input.startsWith("ln(", index)) {
             index += 3; // Skipping "ln("
-            double value = parseAddSubtract(); // Parsing the argument of ln
+            Expression value = parseAddSubtract(); // Parsing the argument of ln
             if (index >= input.length() || input.charAt(index) != ')') {
                 throw new IllegalArgumentException("Missing closing parenthesis for ln");
             }
             index++; // Skip ')'
-            result = Math.log(value);
+            result = new Expression.Ln(value);
         }else if (index < input.length() && (Character.isDigit(input.charAt(index)) || input.charAt(index) == '.')) {
-            StringBuilder number = new StringBuilder();
-            if (sign < 0) number.append('-'); 
+            int start = index;
             while (index < input.length() && (Character.isDigit(input.charAt(index)) || input.charAt(index) == '.')) {
-                number.append(input.charAt(index));
                 index++;
             }
-            result = Double.parseDouble(number.toString());
+            // The sign belongs to the literal itself
+            result = new Expression.Constant(sign * Double.parseDouble(input.substring(start, index)));
+            sign = 1.0;
         } else if (index < input.length() && Character.isLetter(input.charAt(index))) {
-            StringBuilder varName = new StringBuilder();
+            int start = index;
             while (index < input.length() && Character.isLetter(input.charAt(index))) {
-                varName.append(input.charAt(index));
                 index++;
             }
-            String name = varName.toString();
-            if (!variables.containsKey(name)) {
+            String name = input.substring(start, index);
+            int slot = parameters.indexOf(name);
+            if (slot >= 0) {
+                result = new Expression.Variable(name, slot);
+            } else if (variables.containsKey(name)) {
+                result = new Expression.Constant(variables.get(name));
+            } else {
                 throw new IllegalArgumentException("not defined a variable " + name);
             }
-            result = variables.get(name);
         } else {
-            throw new IllegalArgumentException("unexpected character: " + input.charAt(index));
+            throw new IllegalArgumentException("unexpected character: " + (index < input.length() ? input.charAt(index) : "end of input"));
         }
-        return result; 
+        return sign < 0 ? new Expression.Negate(result) : result;
+    }
+
+    /**
+    * Compiles an expression in the single variable {@code x}.
+    *
+    * @param expression the mathematical expression to be compiled
+    * @Returns the compiled expression, which can be shared between threads
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public static Expression compile(String expression) {
+        return compile(expression, "x");
+    }
+
+    /**
+    * Compiles and optimizes an expression in the single variable {@code x} for the given evaluation mode.
+    * In {@link EvaluationMode#GENERATED} mode a JVM class is generated for the expression,
+    * falling back to the expression tree when code generation is unavailable.
+    *
+    * @param expression the mathematical expression to be compiled
+    * @param mode how the compiled expression is evaluated
+    * @Returns the compiled expression, which can be shared between threads
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public static Expression compile(String expression, EvaluationMode mode) {
+        return compile(expression, mode, "x");
     }
 
+    /**
+    * Compiles and optimizes an expression in several variables for the given evaluation mode.
+    *
+    * @param expression the mathematical expression to be compiled
+    * @param mode how the compiled expression is evaluated
+    * @param variableNames the names of the variables, in the order their values are passed to {@link Expression#evaluate(double...)}
+    * @Returns the compiled expression, which can be shared between threads
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public static Expression compile(String expression, EvaluationMode mode, String... variableNames) {
+        Expression tree = compile(expression, variableNames);
+        Metrics.ParseEvent event = Metrics.beginParse();
+        Expression prepared = prepare(tree, mode);
+        Metrics.end(event, mode == EvaluationMode.GENERATED ? "prepare-generated" : "prepare", expression);
+        return prepared;
+    }
+
+    /**
+    * Optimizes an expression tree and, in {@link EvaluationMode#GENERATED} mode, generates a class for it.
+    */
+    static Expression prepare(Expression tree, EvaluationMode mode) {
+        Expression optimized = ExpressionOptimizer.optimize(tree);
+        return mode == EvaluationMode.GENERATED ? ExpressionCodeGenerator.generate(optimized) : optimized;
+    }
+
+    /**
+    * Compiles an expression once into a reusable expression tree.
+    * The constant {@code e} is available unless it is used as a variable name.
+    *
+    * @param expression the mathematical expression to be compiled
+    * @param variableNames the names of the variables, in the order their values are passed to {@link Expression#evaluate(double...)}
+    * @Returns the compiled expression, which can be shared between threads
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public static Expression compile(String expression, String... variableNames) {
+        Metrics.ParseEvent event = Metrics.beginParse();
+        Parser parser = new Parser(expression, Map.of("e", Math.E));
+        parser.parameters = Arrays.asList(variableNames);
+        Expression tree = parser.parseExpression();
+        Metrics.end(event, "parse", expression);
+        return tree;
+    }
+
+    /**
+    * Returns the expression as a boxed function of {@code x}.
+    * The expression is compiled once; prefer {@link #compile(String)} to avoid boxing on every call.
+    *
+    * @param expression the mathematical expression
+    * @Returns the function
+    */
     public static Function<Double, Double> getFunction(String expression) {
-        Parser parser = new Parser(expression, new HashMap<>());
-        return x -> {
-            parser.index = 0;
-            parser.variables.put("x", x);
-            parser.variables.put("e", (double) Math.E);
-            return parser.parse();
-        };
+        Expression compiled = compile(expression);
+        return compiled::applyAsDouble;
+    }
+
+    /**
+    * Returns the expression as a function of a point whose coordinates are the values of the variables.
+    *
+    * @param expression the mathematical expression
+    * @param variableNames the names of the variables, in the order of the coordinates
+    * @Returns the function
+    * @Throws IllegalArgumentException if the expression is malformed
+    */
+    public static ToDoubleFunction<double[]> getFunction(String expression, String... variableNames) {
+        Expression compiled = compile(expression, EvaluationMode.getDefault(), variableNames);
+        return compiled::evaluate;
     }
 }
\ No newline at end of file
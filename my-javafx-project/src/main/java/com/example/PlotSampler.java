@@ -0,0 +1,257 @@
+package com.example;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Samples a function for plotting, reduced to one minimum and maximum per pixel column.
+ * Column {@code c} covers {@code [c * unitsPerPixel, (c + 1) * unitsPerPixel]}; neighbouring columns
+ * share their boundary sample, so drawing a vertical stroke from minimum to maximum in every column
+ * gives a connected curve. Each column starts with three samples and is subdivided further only where
+ * the middle sample is further than the tolerance from the chord of its neighbours, that is where the
+ * curvature is visible at pixel scale.
+ * The columns of the last request are kept, so panning only samples the columns that scrolled into view.
+ */
+final class PlotSampler {
+    /** Maximum number of subdivisions of a column, so a column never takes more than 2^7 + 1 samples. */
+    static final int MAX_DEPTH = 6;
+
+    private final DoubleUnaryOperator f;
+    private final double unitsPerPixel;
+    private double tolerance = Double.NaN;
+    private long firstColumn;
+    private double[] min = new double[0];
+    private double[] max = new double[0];
+    private long evaluations;
+
+    /**
+    * Creates a sampler with an empty cache.
+    *
+    * @param f the function
+    * @param unitsPerPixel the width of a pixel column in x units
+    */
+    PlotSampler(DoubleUnaryOperator f, double unitsPerPixel) {
+        if (!(unitsPerPixel > 0)) {
+            throw new IllegalArgumentException("units per pixel must be positive");
+        }
+        this.f = f;
+        this.unitsPerPixel = unitsPerPixel;
+    }
+
+    /**
+    * Makes the columns {@code first <= c < first + count} available, sampling only those that are
+    * not cached yet. A change of tolerance invalidates the cache.
+    *
+    * @param first the first column
+    * @param count the number of columns
+    * @param tolerance the largest distance from the chord, in y units, that is not refined further
+    */
+    void update(long first, int count, double tolerance) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative");
+        }
+        if (tolerance != this.tolerance) {
+            this.tolerance = tolerance;
+            min = new double[0];
+            max = new double[0];
+        }
+        double[] newMin = new double[count];
+        double[] newMax = new double[count];
+        long cachedEnd = firstColumn + min.length;
+        long overlapFrom = Math.max(first, firstColumn);
+        long overlapTo = Math.min(first + count, cachedEnd);
+        if (overlapFrom < overlapTo) {
+            int length = (int) (overlapTo - overlapFrom);
+            System.arraycopy(min, (int) (overlapFrom - firstColumn), newMin, (int) (overlapFrom - first), length);
+            System.arraycopy(max, (int) (overlapFrom - firstColumn), newMax, (int) (overlapFrom - first), length);
+            sample(first, (int) (overlapFrom - first), newMin, newMax, 0);
+            sample(overlapTo, (int) (first + count - overlapTo), newMin, newMax, (int) (overlapTo - first));
+        } else {
+            sample(first, count, newMin, newMax, 0);
+        }
+        firstColumn = first;
+        min = newMin;
+        max = newMax;
+    }
+
+    /**
+    * Returns the smallest sampled value in a cached column.
+    *
+    * @Returns the minimum, or NaN if the function has no finite value there
+    */
+    double getMin(long column) {
+        return min[(int) (column - firstColumn)];
+    }
+
+    /**
+    * Returns the largest sampled value in a cached column.
+    *
+    * @Returns the maximum, or NaN if the function has no finite value there
+    */
+    double getMax(long column) {
+        return max[(int) (column - firstColumn)];
+    }
+
+    double getUnitsPerPixel() {
+        return unitsPerPixel;
+    }
+
+    /** The number of function evaluations made since the sampler was created. */
+    long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+    * Samples {@code count} columns from {@code from} into {@code min[offset]} and {@code max[offset]} onwards.
+    * Refinement is breadth-first, so every round evaluates all new points of all columns in one batch.
+    */
+    private void sample(long from, int count, double[] min, double[] max, int offset) {
+        if (count <= 0) {
+            return;
+        }
+        // Column boundaries at even indices, one interior point per column at odd indices
+        double[] x = new double[2 * count + 1];
+        for (int c = 0; c <= count; c++) {
+            x[2 * c] = (from + c) * unitsPerPixel;
+        }
+        for (int c = 0; c < count; c++) {
+            x[2 * c + 1] = (from + c + interiorFraction(from + c)) * unitsPerPixel;
+        }
+        double[] y = new double[x.length];
+        evaluate(x, y, x.length);
+        for (int c = 0; c < count; c++) {
+            min[offset + c] = Double.NaN;
+            max[offset + c] = Double.NaN;
+            for (int k = 0; k <= 2; k++) {
+                include(min, max, offset + c, y[2 * c + k]);
+            }
+        }
+
+        // Open intervals, each with its column and three points
+        int[] column = new int[count];
+        double[] xl = new double[count];
+        double[] xm = new double[count];
+        double[] xr = new double[count];
+        double[] fl = new double[count];
+        double[] fm = new double[count];
+        double[] fr = new double[count];
+        for (int c = 0; c < count; c++) {
+            column[c] = c;
+            xl[c] = x[2 * c];
+            xm[c] = x[2 * c + 1];
+            xr[c] = x[2 * c + 2];
+            fl[c] = y[2 * c];
+            fm[c] = y[2 * c + 1];
+            fr[c] = y[2 * c + 2];
+        }
+        int open = count;
+        for (int depth = 0; depth < MAX_DEPTH && open > 0; depth++) {
+            int refined = 0;
+            for (int i = 0; i < open; i++) {
+                // Distance of the interior sample from the chord, the curvature seen at this scale
+                double chord = fl[i] + (fr[i] - fl[i]) * ((xm[i] - xl[i]) / (xr[i] - xl[i]));
+                if (Math.abs(fm[i] - chord) > tolerance) {
+                    column[refined] = column[i];
+                    xl[refined] = xl[i];
+                    xm[refined] = xm[i];
+                    xr[refined] = xr[i];
+                    fl[refined] = fl[i];
+                    fm[refined] = fm[i];
+                    fr[refined] = fr[i];
+                    refined++;
+                }
+            }
+            if (refined == 0) {
+                break;
+            }
+            double[] centres = new double[2 * refined];
+            for (int i = 0; i < refined; i++) {
+                centres[2 * i] = 0.5 * (xl[i] + xm[i]);
+                centres[2 * i + 1] = 0.5 * (xm[i] + xr[i]);
+            }
+            double[] values = new double[centres.length];
+            evaluate(centres, values, centres.length);
+
+            // Each refined interval becomes the two intervals either side of its interior point
+            int[] nextColumn = new int[2 * refined];
+            double[] nextXl = new double[2 * refined];
+            double[] nextXm = new double[2 * refined];
+            double[] nextXr = new double[2 * refined];
+            double[] nextFl = new double[2 * refined];
+            double[] nextFm = new double[2 * refined];
+            double[] nextFr = new double[2 * refined];
+            for (int i = 0; i < refined; i++) {
+                include(min, max, offset + column[i], values[2 * i]);
+                include(min, max, offset + column[i], values[2 * i + 1]);
+                int left = 2 * i;
+                int right = 2 * i + 1;
+                nextColumn[left] = column[i];
+                nextXl[left] = xl[i];
+                nextXm[left] = centres[left];
+                nextXr[left] = xm[i];
+                nextFl[left] = fl[i];
+                nextFm[left] = values[left];
+                nextFr[left] = fm[i];
+                nextColumn[right] = column[i];
+                nextXl[right] = xm[i];
+                nextXm[right] = centres[right];
+                nextXr[right] = xr[i];
+                nextFl[right] = fm[i];
+                nextFm[right] = values[right];
+                nextFr[right] = fr[i];
+            }
+            column = nextColumn;
+            xl = nextXl;
+            xm = nextXm;
+            xr = nextXr;
+            fl = nextFl;
+            fm = nextFm;
+            fr = nextFr;
+            open = 2 * refined;
+        }
+    }
+
+    /**
+    * Places the first interior sample of a column between a quarter and three quarters of its width,
+    * at a position that follows the golden-ratio sequence of the column index. Periodic functions then
+    * cannot hide from every column at once, as they can when all columns are sampled at their centres.
+    * The position depends only on the column, so cached and newly sampled columns agree.
+    */
+    private static double interiorFraction(long column) {
+        double golden = column * 0.6180339887498949;
+        return 0.25 + 0.5 * (golden - Math.floor(golden));
+    }
+
+    private static void include(double[] min, double[] max, int index, double value) {
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        if (!(min[index] <= value)) {
+            min[index] = value;
+        }
+        if (!(max[index] >= value)) {
+            max[index] = value;
+        }
+    }
+
+    /**
+    * Evaluates a batch; a point where evaluation fails, such as a division by zero, becomes NaN
+    * and is drawn as a gap. Only a cancellation of the computation is passed on.
+    */
+    private void evaluate(double[] x, double[] y, int length) {
+        evaluations += length;
+        try {
+            GridSum.evaluate(f, x, y, length);
+        } catch (CancellationException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            for (int i = 0; i < length; i++) {
+                try {
+                    y[i] = f.applyAsDouble(x[i]);
+                } catch (RuntimeException pointEx) {
+                    y[i] = Double.NaN;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Follows a long-running computation and lets another thread cancel it.
+ * A monitor is installed on the computing thread with {@link #run}. The evaluation kernels report
+ * every block of function evaluations to the monitor of their thread, and once the monitor is
+ * cancelled the next block throws a {@link CancellationException} instead of being evaluated.
+ * Parallel rules hand the monitor on to their worker tasks.
+ */
+public class ProgressMonitor {
+    private static final ThreadLocal<ProgressMonitor> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong evaluations = new AtomicLong();
+    private volatile boolean cancelled;
+
+    /**
+    * Runs a computation on the current thread with this monitor installed.
+    *
+    * @param computation the computation, such as a call to one of the integration rules
+    * @Returns the result of the computation
+    * @Throws CancellationException if the monitor was cancelled before the computation finished
+    */
+    public <T> T run(Supplier<T> computation) {
+        ProgressMonitor previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            checkpoint(this, 0);
+            return computation.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+    * Requests the computation to stop at its next block of evaluations. May be called from any thread.
+    */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** The number of function evaluations reported so far. */
+    public long getEvaluations() {
+        return evaluations.get();
+    }
+
+    /**
+    * Called after every reported block of evaluations, on the thread that evaluated it.
+    * Does nothing by default.
+    *
+    * @param evaluations the total number of evaluations reported so far
+    */
+    protected void progressed(long evaluations) {
+    }
+
+    /**
+    * Returns the monitor installed on the current thread.
+    *
+    * @Returns the monitor, or null if the computation is not monitored
+    */
+    static ProgressMonitor current() {
+        return CURRENT.get();
+    }
+
+    /**
+    * Reports evaluations that are about to be made and stops the computation if it was cancelled.
+    *
+    * @param monitor the monitor, may be null
+    * @param count the number of evaluations
+    * @Throws CancellationException if the monitor was cancelled
+    */
+    static void checkpoint(ProgressMonitor monitor, long count) {
+        if (monitor == null) {
+            return;
+        }
+        if (monitor.cancelled) {
+            throw new CancellationException("computation cancelled");
+        }
+        if (count > 0) {
+            monitor.progressed(monitor.evaluations.addAndGet(count));
+        }
+    }
+}
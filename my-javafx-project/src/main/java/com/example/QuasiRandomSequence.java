@@ -0,0 +1,232 @@
+package com.example;
+
+import java.util.SplittableRandom;
+
+/**
+ * Low-discrepancy point sequences in the unit cube for quasi-Monte Carlo integration.
+ * They fill the cube far more evenly than random points, so the error shrinks almost like 1/N
+ * instead of 1/sqrt(N). Each sequence is randomized by a shift drawn from a {@link SplittableRandom},
+ * which keeps its evenness and makes independent replicates possible for an error estimate.
+ */
+public enum QuasiRandomSequence {
+    /**
+     * Sobol' points in base 2, with the direction numbers of Joe and Kuo, randomized by a digital shift.
+     * The first 2^k points of every dimension are perfectly stratified, so point counts should be powers of two.
+     */
+    SOBOL(Sobol.MAX_DIMENSIONS) {
+        @Override
+        Generator generator(int dimensions, SplittableRandom random) {
+            return new Sobol(dimensions, random);
+        }
+    },
+    /**
+     * Halton points, the radical inverses of the index in the first prime bases, randomized by a shift modulo 1.
+     * They accept any point count, but correlations between large bases make them weaker than Sobol' points
+     * beyond a few dimensions.
+     */
+    HALTON(Halton.PRIMES.length) {
+        @Override
+        Generator generator(int dimensions, SplittableRandom random) {
+            return new Halton(dimensions, random);
+        }
+    };
+
+    private final int maxDimensions;
+
+    QuasiRandomSequence(int maxDimensions) {
+        this.maxDimensions = maxDimensions;
+    }
+
+    public int getMaxDimensions() {
+        return maxDimensions;
+    }
+
+    /**
+    * Creates a randomized copy of the sequence.
+    *
+    * @param dimensions the dimension of the points
+    * @param random the source of the random shift
+    * @Returns a generator positioned at index 0
+    */
+    abstract Generator generator(int dimensions, SplittableRandom random);
+
+    /**
+     * Produces consecutive points of one randomized sequence. A generator is not thread-safe, but
+     * {@link #copy()} gives another one with the same randomization, so chunks of the sequence
+     * can be produced on different threads.
+     */
+    abstract static class Generator {
+        /** Moves to the point with the given index. */
+        abstract void seek(long index);
+
+        /** Writes the current point, with coordinates strictly between 0 and 1, and moves to the next one. */
+        abstract void next(double[] point);
+
+        /** Returns a generator with the same randomization, positioned at index 0. */
+        abstract Generator copy();
+    }
+
+    private static final class Sobol extends Generator {
+        static final int MAX_DIMENSIONS = 10;
+        private static final int BITS = 32;
+        /*
+         * Joe and Kuo's parameters for dimensions 2 and up: the degree s and coefficients a of a primitive
+         * polynomial, and the initial direction numbers m_1..m_s.
+         */
+        private static final int[][] PARAMETERS = {
+            {1, 0, 1},
+            {2, 1, 1, 3},
+            {3, 1, 1, 3, 1},
+            {3, 2, 1, 1, 1},
+            {4, 1, 1, 1, 3, 3},
+            {4, 4, 1, 3, 5, 13},
+            {5, 2, 1, 1, 5, 5, 17},
+            {5, 4, 1, 1, 5, 5, 5},
+            {5, 7, 1, 1, 7, 11, 19},
+        };
+        private static final int[][] DIRECTIONS = directions();
+
+        private final int dimensions;
+        private final int[] shift;
+        private final int[] state;
+        private long index;
+
+        Sobol(int dimensions, SplittableRandom random) {
+            this.dimensions = dimensions;
+            shift = new int[dimensions];
+            for (int j = 0; j < dimensions; j++) {
+                shift[j] = random.nextInt();
+            }
+            state = new int[dimensions];
+        }
+
+        private Sobol(Sobol other) {
+            dimensions = other.dimensions;
+            shift = other.shift;
+            state = new int[dimensions];
+        }
+
+        private static int[][] directions() {
+            int[][] directions = new int[MAX_DIMENSIONS][BITS];
+            for (int k = 0; k < BITS; k++) {
+                directions[0][k] = 1 << (BITS - 1 - k);
+            }
+            for (int j = 1; j < MAX_DIMENSIONS; j++) {
+                int[] parameters = PARAMETERS[j - 1];
+                int s = parameters[0];
+                int a = parameters[1];
+                int[] v = directions[j];
+                for (int k = 0; k < s; k++) {
+                    v[k] = parameters[2 + k] << (BITS - 1 - k);
+                }
+                for (int k = s; k < BITS; k++) {
+                    v[k] = v[k - s] ^ (v[k - s] >>> s);
+                    for (int i = 1; i < s; i++) {
+                        if (((a >>> (s - 1 - i)) & 1) != 0) {
+                            v[k] ^= v[k - i];
+                        }
+                    }
+                }
+            }
+            return directions;
+        }
+
+        @Override
+        void seek(long index) {
+            if (index < 0 || index >= 1L << BITS) {
+                throw new IllegalArgumentException("Sobol' index out of range: " + index);
+            }
+            this.index = index;
+            // Point i is the XOR of the direction numbers selected by the bits of its Gray code
+            long gray = index ^ (index >>> 1);
+            for (int j = 0; j < dimensions; j++) {
+                int x = 0;
+                for (int k = 0; gray >>> k != 0; k++) {
+                    if (((gray >>> k) & 1) != 0) {
+                        x ^= DIRECTIONS[j][k];
+                    }
+                }
+                state[j] = x;
+            }
+        }
+
+        @Override
+        void next(double[] point) {
+            for (int j = 0; j < dimensions; j++) {
+                // Centred in its cell of width 2^-32, so never exactly 0 or 1
+                point[j] = ((state[j] ^ shift[j]) & 0xffffffffL) * 0x1p-32 + 0x1p-33;
+            }
+            index++;
+            // Consecutive Gray codes differ in the lowest set bit of the new index
+            int bit = Long.numberOfTrailingZeros(index);
+            if (bit < BITS) {
+                for (int j = 0; j < dimensions; j++) {
+                    state[j] ^= DIRECTIONS[j][bit];
+                }
+            }
+        }
+
+        @Override
+        Generator copy() {
+            return new Sobol(this);
+        }
+    }
+
+    private static final class Halton extends Generator {
+        static final int[] PRIMES = {
+            2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53,
+            59, 61, 67, 71, 73, 79, 83, 89, 97, 101, 103, 107, 109, 113, 127, 131,
+        };
+
+        private final int dimensions;
+        private final double[] shift;
+        private long index;
+
+        Halton(int dimensions, SplittableRandom random) {
+            this.dimensions = dimensions;
+            shift = new double[dimensions];
+            for (int j = 0; j < dimensions; j++) {
+                shift[j] = random.nextDouble();
+            }
+        }
+
+        private Halton(Halton other) {
+            dimensions = other.dimensions;
+            shift = other.shift;
+        }
+
+        @Override
+        void seek(long index) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Halton index out of range: " + index);
+            }
+            this.index = index;
+        }
+
+        @Override
+        void next(double[] point) {
+            for (int j = 0; j < dimensions; j++) {
+                double x = radicalInverse(PRIMES[j], index) + shift[j];
+                x -= Math.floor(x);
+                point[j] = x > 0 ? x : Double.MIN_NORMAL;
+            }
+            index++;
+        }
+
+        private static double radicalInverse(int base, long index) {
+            double inverse = 1.0 / base;
+            double digitValue = inverse;
+            double result = 0;
+            for (long i = index; i > 0; i /= base) {
+                result += (i % base) * digitValue;
+                digitValue *= inverse;
+            }
+            return result;
+        }
+
+        @Override
+        Generator copy() {
+            return new Halton(this);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of job results, so that jobs repeated across runs are not computed again.
+ * <p>
+ * Results are appended to a memory-mapped file of fixed size as records of
+ * {@code [key length][CRC-32][key][value]}, terminated by a zero length. An in-memory index maps
+ * every key to the position of its value. Opening the file rebuilds the index by scanning the
+ * records up to the terminator or the first damaged record, so a run that was killed loses at most
+ * the results it was writing. Results are forced to the disk by {@link #flush()}, by {@link #close()}, and
+ * while they are being stored, at most {@link #FORCE_INTERVAL_NANOS} after the previous force.
+ * <p>
+ * A key is the method name and version, the {@link #ENGINE_VERSION}, the {@link EvaluationMode} the
+ * expression is compiled with, the whitespace-normalized expression and the exact inputs.
+ * Raising the {@linkplain JobMethod#getVersion() version} of a method, or the engine version, makes the old
+ * results unreachable; they are dropped at the next compaction. Raising {@link #FORMAT_VERSION} discards
+ * the whole file.
+ * When the file is full it is compacted in place: the most recently used results that fit in half of it
+ * are kept and the others are evicted.
+ * <p>
+ * The cache is safe to use from many threads. The file is locked, so only one process can use it at a time.
+ */
+public final class ResultCache implements Closeable {
+    /** The version of the file layout and key encoding. */
+    public static final int FORMAT_VERSION = 2;
+    /**
+     * The version of the code every method shares: {@link Parser}, {@link ExpressionOptimizer}, the evaluation
+     * of {@link Expression}s and {@link GridSum}. Raise it with any change there that can alter a result.
+     */
+    public static final int ENGINE_VERSION = 1;
+    /** The time after which storing a result forces the file to the disk, 1 second. */
+    public static final long FORCE_INTERVAL_NANOS = 1_000_000_000L;
+    public static final long DEFAULT_SIZE = 64L << 20;
+
+    private static final long MAGIC = 0x4957452d52455355L;
+    private static final int HEADER_SIZE = 16;
+    /** Key length, checksum and value. */
+    private static final int RECORD_OVERHEAD = 16;
+
+    private static volatile ResultCache shared;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    /** Keys and the positions of their values, least recently used first. */
+    private final LinkedHashMap<String, Integer> index = new LinkedHashMap<>(1024, 0.75f, true);
+    private int end;
+    /** Whether the buffer changed since it was last forced. */
+    private boolean unforced;
+    private long lastForce = System.nanoTime();
+    private boolean closed;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final long stale;
+
+    private ResultCache(Path path, FileChannel channel, FileLock lock, int capacity) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.lock = lock;
+        this.capacity = capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.stale = load();
+    }
+
+    /**
+    * Opens a cache file, creating it if it does not exist.
+    *
+    * @param path the file
+    * @param size the size of the file in bytes, between 4 KiB and 1 GiB
+    * @Returns the cache, holding the results of earlier runs
+    * @Throws IOException if the file cannot be opened or is already open, in this or another process
+    */
+    public static ResultCache open(Path path, long size) throws IOException {
+        if (size < 4096 || size > 1L << 30) {
+            throw new IllegalArgumentException("cache size must be between 4 KiB and 1 GiB");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException ex) {
+                // Already open in this JVM
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("result cache " + path + " is already open");
+            }
+            return new ResultCache(path, channel, lock, (int) size);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+    * Returns the cache that {@link Job#run()} uses.
+    *
+    * @Returns the shared cache, or null if results are not cached
+    */
+    public static ResultCache shared() {
+        return shared;
+    }
+
+    /**
+    * Sets the cache that {@link Job#run()} uses.
+    *
+    * @param cache the cache, or null to stop caching results
+    */
+    public static void setShared(ResultCache cache) {
+        shared = cache;
+    }
+
+    /**
+    * Returns the result of a job, computing and storing it if it is not cached.
+    *
+    * @Returns the result
+    * @Throws IllegalArgumentException if the job fails; failures are not cached
+    * @Throws ArithmeticException if the expression divides by zero
+    * @Throws IllegalStateException if the cache is closed
+    */
+    public double get(Job job) {
+        String key = key(job);
+        synchronized (this) {
+            checkOpen();
+            Integer position = index.get(key);
+            if (position != null) {
+                hits.increment();
+                return Double.longBitsToDouble(buffer.getLong(position));
+            }
+        }
+        misses.increment();
+        // Computed outside the lock; two threads missing on the same job both compute it
+        double value = job.getMethod().compute(job);
+        put(key, value);
+        return value;
+    }
+
+    /**
+    * Builds the key of a job, {@code method#version|engine|mode|expression|h|a|b}, in the
+    * {@linkplain EvaluationMode#getDefault() evaluation mode} that {@link Job#run()} compiles with.
+    * Numbers are written so that they read back to the same double.
+    */
+    static String key(Job job) {
+        return key(job, EvaluationMode.getDefault());
+    }
+
+    static String key(Job job, EvaluationMode mode) {
+        JobMethod method = job.getMethod();
+        return method.getMethodName() + '#' + method.getVersion() + '|' + ENGINE_VERSION + '|' + mode.name()
+                + '|' + Parser.normalize(job.getExpression()) + '|' + job.getH() + '|' + job.getA() + '|' + job.getB();
+    }
+
+    private synchronized void put(String key, double value) {
+        // Closed while the value was computed; the caller still gets it
+        if (closed || index.containsKey(key)) {
+            return;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int size = RECORD_OVERHEAD + bytes.length;
+        if (end + size + 4 > capacity) {
+            compact();
+            if (end + size + 4 > capacity) {
+                return;
+            }
+        }
+        index.put(key, write(end, bytes, value));
+        end += size;
+        buffer.putInt(end, 0);
+        unforced = true;
+        if (System.nanoTime() - lastForce >= FORCE_INTERVAL_NANOS) {
+            flush();
+        }
+    }
+
+    /**
+    * Writes a record.
+    *
+    * @Returns the position of its value
+    */
+    private int write(int position, byte[] key, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        buffer.putInt(position, key.length);
+        buffer.putInt(position + 4, checksum(key, bits));
+        buffer.put(position + 8, key);
+        int valuePosition = position + 8 + key.length;
+        buffer.putLong(valuePosition, bits);
+        return valuePosition;
+    }
+
+    private static int checksum(byte[] key, long bits) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (bits >>> shift));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+    * Reads the header and indexes the records, or starts an empty file if the header is missing or from another format.
+    *
+    * @Returns the number of records skipped because their method version is outdated
+    */
+    private long load() {
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != FORMAT_VERSION) {
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, FORMAT_VERSION);
+            buffer.putInt(12, 0);
+            buffer.putInt(HEADER_SIZE, 0);
+            end = HEADER_SIZE;
+            unforced = true;
+            return 0;
+        }
+        long outdated = 0;
+        int position = HEADER_SIZE;
+        while (position + RECORD_OVERHEAD <= capacity) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_OVERHEAD + length > capacity) {
+                break;
+            }
+            byte[] key = new byte[length];
+            buffer.get(position + 8, key);
+            long bits = buffer.getLong(position + 8 + length);
+            if (checksum(key, bits) != buffer.getInt(position + 4)) {
+                break;
+            }
+            String text = new String(key, StandardCharsets.UTF_8);
+            if (isCurrent(text)) {
+                index.put(text, position + 8 + length);
+            } else {
+                outdated++;
+            }
+            position += RECORD_OVERHEAD + length;
+        }
+        end = position;
+        if (end + 4 <= capacity) {
+            buffer.putInt(end, 0);
+        }
+        return outdated;
+    }
+
+    /** Tells whether a key was written by the current version of its method and of the engine. */
+    private static boolean isCurrent(String key) {
+        int hash = key.indexOf('#');
+        int bar = key.indexOf('|');
+        int engineBar = key.indexOf('|', bar + 1);
+        if (hash < 0 || bar < hash || engineBar < 0) {
+            return false;
+        }
+        try {
+            return JobMethod.fromName(key.substring(0, hash)).getVersion() == Integer.parseInt(key.substring(hash + 1, bar))
+                    && ENGINE_VERSION == Integer.parseInt(key.substring(bar + 1, engineBar));
+        } catch (IllegalArgumentException ex) {
+            // A method that no longer exists
+            return false;
+        }
+    }
+
+    /**
+    * Rewrites the file with the most recently used results that fit in half of it.
+    */
+    private void compact() {
+        compactions.increment();
+        List<byte[]> keys = new ArrayList<>();
+        List<Long> values = new ArrayList<>();
+        int kept = 0;
+        int budget = (capacity - HEADER_SIZE) / 2;
+        // The index iterates from least to most recently used, so keep a suffix of it
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(index.entrySet());
+        int first = entries.size();
+        int bytes = 0;
+        while (first > 0) {
+            Map.Entry<String, Integer> entry = entries.get(first - 1);
+            int size = RECORD_OVERHEAD + entry.getKey().getBytes(StandardCharsets.UTF_8).length;
+            if (bytes + size > budget) {
+                break;
+            }
+            bytes += size;
+            first--;
+        }
+        for (int i = first; i < entries.size(); i++) {
+            keys.add(entries.get(i).getKey().getBytes(StandardCharsets.UTF_8));
+            values.add(buffer.getLong(entries.get(i).getValue()));
+            kept++;
+        }
+        evictions.add(entries.size() - kept);
+
+        index.clear();
+        int position = HEADER_SIZE;
+        for (int i = 0; i < kept; i++) {
+            byte[] key = keys.get(i);
+            index.put(new String(key, StandardCharsets.UTF_8), write(position, key, Double.longBitsToDouble(values.get(i))));
+            position += RECORD_OVERHEAD + key.length;
+        }
+        end = position;
+        buffer.putInt(end, 0);
+    }
+
+    /**
+    * Writes the results stored so far to the disk.
+    *
+    * @Throws IllegalStateException if the cache is closed
+    */
+    public synchronized void flush() {
+        checkOpen();
+        if (unforced) {
+            buffer.force();
+            unforced = false;
+        }
+        lastForce = System.nanoTime();
+    }
+
+    /**
+    * Writes the results to the disk and releases the file. Closing a closed cache does nothing.
+    *
+    * @Throws IOException if the file cannot be closed
+    */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buffer.force();
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("result cache " + path + " is closed");
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** The bytes of the file in use, including results that are no longer reachable. */
+    public synchronized long getUsedBytes() {
+        return end;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** The results dropped by compactions to make room. */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    /** The results found at opening that an older version of their method or of the engine computed. */
+    public long getStale() {
+        return stale;
+    }
+
+    /**
+    * Returns the fraction of lookups that were served from the cache.
+    *
+    * @Returns the hit rate between 0 and 1, or 0 if there were no lookups
+    */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d results, %d hits, %d misses (%.1f%% hit rate), %d evicted, %d stale",
+                size(), getHits(), getMisses(), 100 * getHitRate(), getEvictions(), getStale());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Romberg integration. The trapezoidal rule is refined by halving the step, and each level
+ * reuses the previous level's sum so that only the new midpoints are evaluated. Richardson
+ * extrapolation over the resulting tableau removes the h^2, h^4, ... error terms.
+ * The total cost is therefore that of the finest trapezoidal level alone.
+ */
+final class Romberg {
+    /** Levels below this are never accepted, so that early agreement by chance does not stop the refinement. */
+    private static final int MIN_LEVELS = 4;
+    static final int MAX_LEVELS = 30;
+
+    private Romberg() {
+    }
+
+    /**
+    * Refines until two consecutive diagonal entries of the tableau agree within the tolerance.
+    *
+    * @param maxLevels the maximum number of halvings, which bounds the evaluations by 2^maxLevels + 1
+    * @Returns the extrapolated value, the last diagonal difference as error estimate and the evaluation count
+    */
+    static IntegrationResult integrate(DoubleUnaryOperator f, double a, double b, double absoluteTolerance, double relativeTolerance, int maxLevels) {
+        if (maxLevels < 1 || maxLevels > MAX_LEVELS) {
+            throw new IllegalArgumentException("maxLevels must be between 1 and " + MAX_LEVELS);
+        }
+        if (absoluteTolerance < 0 || relativeTolerance < 0 || (absoluteTolerance == 0 && relativeTolerance == 0)) {
+            throw new IllegalArgumentException("at least one tolerance must be positive and none negative");
+        }
+        double[] previous = new double[maxLevels + 1];
+        double[] current = new double[maxLevels + 1];
+        double width = b - a;
+        previous[0] = 0.5 * width * (f.applyAsDouble(a) + f.applyAsDouble(b));
+        long evaluations = 2;
+        double error = Double.POSITIVE_INFINITY;
+        double value = previous[0];
+        for (int level = 1; level <= maxLevels; level++) {
+            int newPoints = 1 << (level - 1);
+            double h = width / (2 * newPoints);
+            // Only the midpoints a + (2i + 1) h are new at this level
+            double midpoints = GridSum.weightedSum(f, a + h, 2 * h, 0, newPoints, 1, 1);
+            evaluations += newPoints;
+            current[0] = 0.5 * previous[0] + h * midpoints;
+            double factor = 1;
+            for (int k = 1; k <= level; k++) {
+                factor *= 4;
+                current[k] = current[k - 1] + (current[k - 1] - previous[k - 1]) / (factor - 1);
+            }
+            error = Math.abs(current[level] - previous[level - 1]);
+            value = current[level];
+            if (level >= MIN_LEVELS && error <= Math.max(absoluteTolerance, relativeTolerance * Math.abs(value))) {
+                return new IntegrationResult(value, error, evaluations, true);
+            }
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return new IntegrationResult(value, error, evaluations, false);
+    }
+}
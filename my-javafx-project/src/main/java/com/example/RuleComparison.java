@@ -0,0 +1,107 @@
+package com.example;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * The trapezoidal, midpoint and Simpson's rules evaluated side by side from one set of samples.
+ * With n panels of width h, the trapezoidal and Simpson's rules use the nodes {@code a + i h} and the
+ * midpoint rule uses {@code a + (i + 1/2) h}; together they form the trapezoid lattice of step h/2.
+ * Sampling that lattice once gives all three rules, plus the rules at h/2 from which Richardson
+ * extrapolation estimates the error of each.
+ */
+public final class RuleComparison {
+    private final double trapezoidal;
+    private final double midpoint;
+    private final double simpson;
+    private final double trapezoidalError;
+    private final double midpointError;
+    private final double simpsonError;
+    private final double extrapolated;
+    private final long evaluations;
+
+    private RuleComparison(double trapezoidal, double midpoint, double simpson, double trapezoidalError,
+            double midpointError, double simpsonError, double extrapolated, long evaluations) {
+        this.trapezoidal = trapezoidal;
+        this.midpoint = midpoint;
+        this.simpson = simpson;
+        this.trapezoidalError = trapezoidalError;
+        this.midpointError = midpointError;
+        this.simpsonError = simpsonError;
+        this.extrapolated = extrapolated;
+        this.evaluations = evaluations;
+    }
+
+    static RuleComparison compute(double h, double intervalStart, double intervalEnd, DoubleUnaryOperator f) {
+        int n = GridSum.stepCount(h, intervalStart, intervalEnd);
+        if (n % 2 != 0) {
+            n++;
+        }
+        if (n > (Integer.MAX_VALUE - GridSum.BLOCK) / 2) {
+            throw new IllegalArgumentException("step size too small for the interval");
+        }
+        h = (intervalEnd - intervalStart) / n;
+        double ends = f.applyAsDouble(intervalStart) + f.applyAsDouble(intervalEnd);
+        // Lattice index m covers a + m h/2: m = 0 mod 4 are even nodes, 2 mod 4 odd nodes, odd m midpoints
+        double[] sums = GridSum.residueSums(f, intervalStart, h / 2, 1, 2 * n, 4);
+        double evenNodes = sums[0];
+        double oddNodes = sums[2];
+        double midpoints = sums[1] + sums[3];
+
+        double trapezoidal = h * (ends / 2 + evenNodes + oddNodes);
+        double midpoint = h * midpoints;
+        double simpson = h / 3 * (ends + 4 * oddNodes + 2 * evenNodes);
+        // The same rules on the lattice of step h/2
+        double fineTrapezoidal = (trapezoidal + midpoint) / 2;
+        double fineSimpson = (trapezoidal + 2 * midpoint) / 3;
+
+        // Trapezoid and midpoint errors are c h^2 and -c h^2 / 2, Simpson's is c h^4
+        double trapezoidalError = 4.0 / 3 * (trapezoidal - fineTrapezoidal);
+        double midpointError = -trapezoidalError / 2;
+        double simpsonError = 16.0 / 15 * (simpson - fineSimpson);
+        double extrapolated = fineSimpson + (fineSimpson - simpson) / 15;
+        return new RuleComparison(trapezoidal, midpoint, simpson, trapezoidalError, midpointError, simpsonError,
+                extrapolated, 2L * n + 1);
+    }
+
+    public double getTrapezoidal() {
+        return trapezoidal;
+    }
+
+    public double getMidpoint() {
+        return midpoint;
+    }
+
+    public double getSimpson() {
+        return simpson;
+    }
+
+    /** Estimated error (rule minus exact value) of the trapezoidal rule. */
+    public double getTrapezoidalError() {
+        return trapezoidalError;
+    }
+
+    /** Estimated error (rule minus exact value) of the midpoint rule. */
+    public double getMidpointError() {
+        return midpointError;
+    }
+
+    /** Estimated error (rule minus exact value) of Simpson's rule. */
+    public double getSimpsonError() {
+        return simpsonError;
+    }
+
+    /** The Richardson-extrapolated value, the best estimate of the integral from these samples. */
+    public double getExtrapolated() {
+        return extrapolated;
+    }
+
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Trapezoidal %.15g (error %.3g)%nMidpoint %.15g (error %.3g)%nSimpson %.15g (error %.3g)%nExtrapolated %.15g",
+                trapezoidal, trapezoidalError, midpoint, midpointError, simpson, simpsonError, extrapolated);
+    }
+}
@@ -0,0 +1,493 @@
+package com.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleUnaryOperator;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Plots a function, its derivative and the area under it between two bounds.
+ * The curves are drawn on a single canvas, one minimum-maximum stroke per pixel column, from
+ * {@link PlotSampler}s that keep the visible columns. Dragging pans by whole pixels, so a pan only
+ * samples the columns that scrolled into view; scrolling zooms in steps of 2^(1/4), and the samplers
+ * of the last few zoom levels are kept so zooming back is free. Redrawing happens at most once per frame.
+ * <p>
+ * Nothing is compiled or sampled on the JavaFX Application Thread. Plotting compiles the function and its
+ * derivative on the {@link CalculationRunner}, which can be cancelled, and then integrates. Sampling runs on
+ * a thread of its own, so a pan never waits behind the calculations of the other tabs. It handles one request
+ * at a time: the canvas draws the latest finished samples, shifted while a pan is being sampled, and asks for
+ * the current view again whenever a request finishes.
+ */
+final class VisualizerPane extends BorderPane {
+    private static final double ZOOM_STEP = Math.pow(2, 0.25);
+    private static final int MAX_LEVEL = 120;
+    /** Number of zoom levels whose samples are kept per curve. */
+    private static final int CACHED_LEVELS = 8;
+    private static final double DEFAULT_WIDTH = 800;
+
+    private final Canvas canvas = new Canvas();
+    private final TextField functionField = new TextField("sin(x)");
+    private final TextField startField = new TextField("0");
+    private final TextField endField = new TextField("3.14159");
+    private final CheckBox derivativeBox = new CheckBox("Show f'");
+    private final CheckBox areaBox = new CheckBox("Shade integral");
+    private final Label statusLabel = new Label();
+    private final CalculationRunner runner;
+    private final ExecutorService samplingThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plot-sampling");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AnimationTimer timer;
+
+    // Set on the application thread; the samplers inside are only used by the sampling request in flight
+    private Curve curve;
+    private Curve derivative;
+    private Samples samples;
+    private boolean sampling;
+    private double intervalStart;
+    private double intervalEnd;
+    // The view: column c covers [c, c + 1] * unitsPerPixel(), the canvas starts at originColumn
+    private double baseUnitsPerPixel = 0.01;
+    private int level;
+    private long originColumn;
+    private double yCenter;
+    private double ySpan = 3;
+    private boolean dirty = true;
+
+    private double pressX;
+    private double pressY;
+    private long pressOrigin;
+    private double pressCenter;
+
+    VisualizerPane(CalculationRunner runner) {
+        this.runner = runner;
+        derivativeBox.setSelected(true);
+        areaBox.setSelected(true);
+        functionField.setPrefWidth(200);
+        startField.setPrefWidth(70);
+        endField.setPrefWidth(70);
+
+        Button plotButton = new Button("Plot");
+        plotButton.setOnAction(e -> plot());
+        Button fitButton = new Button("Fit");
+        fitButton.setOnAction(e -> fitY());
+        derivativeBox.setOnAction(e -> dirty = true);
+        areaBox.setOnAction(e -> dirty = true);
+        setTop(new HBox(10, new Label("f(x) ="), functionField, new Label("from"), startField, new Label("to"), endField,
+                derivativeBox, areaBox, plotButton, fitButton, runner.cancelButton, runner.progressBar));
+
+        Pane plotArea = new Pane();
+        plotArea.getChildren().add(canvas);
+        canvas.widthProperty().bind(plotArea.widthProperty());
+        canvas.heightProperty().bind(plotArea.heightProperty());
+        canvas.widthProperty().addListener((observable, oldValue, newValue) -> dirty = true);
+        canvas.heightProperty().addListener((observable, oldValue, newValue) -> dirty = true);
+        setCenter(plotArea);
+        setBottom(statusLabel);
+
+        canvas.setOnMousePressed(e -> {
+            pressX = e.getX();
+            pressY = e.getY();
+            pressOrigin = originColumn;
+            pressCenter = yCenter;
+        });
+        canvas.setOnMouseDragged(e -> {
+            originColumn = pressOrigin - Math.round(e.getX() - pressX);
+            yCenter = pressCenter + (e.getY() - pressY) * ySpan / Math.max(1, canvas.getHeight());
+            dirty = true;
+        });
+        canvas.setOnScroll(e -> {
+            if (e.getDeltaY() != 0) {
+                zoom(e.getDeltaY() > 0 ? 1 : -1, e.getX());
+            }
+        });
+
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (dirty) {
+                    dirty = false;
+                    requestSamples();
+                    draw();
+                }
+            }
+        };
+        timer.start();
+    }
+
+    void stop() {
+        timer.stop();
+        runner.cancel();
+        samplingThread.shutdownNow();
+    }
+
+    private void plot() {
+        String function = functionField.getText();
+        double a;
+        double b;
+        try {
+            a = Double.parseDouble(startField.getText());
+            b = Double.parseDouble(endField.getText());
+        } catch (NumberFormatException ex) {
+            statusLabel.setText("Error: Invalid input");
+            return;
+        }
+        double start = Math.min(a, b);
+        double end = Math.max(a, b);
+
+        // Show the interval with a margin of an eighth on either side
+        double span = end > start ? end - start : 1;
+        int columns = columnCount();
+        double unitsPerPixel = 1.25 * span / columns;
+        long origin = Math.round((start - 0.125 * span) / unitsPerPixel);
+
+        // Compiling may generate and compile a class, so it runs in the background like the integral
+        runner.start(() -> {
+            Curve values = new Curve(ExpressionCache.shared().get(function));
+            Curve slopes = new Curve(ExpressionCache.shared().getDerivative(function, 1));
+            return new Plot(values, slopes, fitRange(values.f, origin, columns, unitsPerPixel));
+        }, 0, plot -> {
+            curve = plot.curve;
+            derivative = plot.derivative;
+            samples = null;
+            intervalStart = start;
+            intervalEnd = end;
+            baseUnitsPerPixel = unitsPerPixel;
+            level = 0;
+            originColumn = origin;
+            yCenter = plot.yRange[0];
+            ySpan = plot.yRange[1];
+            dirty = true;
+            runner.start(() -> IntegrationMethods.GaussKronrodRule(1e-10, 1e-10, 1_000_000, a, b, function), 0,
+                    result -> statusLabel.setText("Integral from " + a + " to " + b + " = " + result), statusLabel);
+        }, statusLabel);
+    }
+
+    private void zoom(int steps, double mouseX) {
+        int newLevel = Math.max(-MAX_LEVEL, Math.min(MAX_LEVEL, level + steps));
+        // Keep the point under the cursor in place
+        double x = (originColumn + mouseX) * unitsPerPixel();
+        level = newLevel;
+        originColumn = Math.round(x / unitsPerPixel() - mouseX);
+        dirty = true;
+    }
+
+    /**
+    * Sets the y range to the values of f in view, sampled in the background.
+    */
+    private void fitY() {
+        if (curve == null) {
+            return;
+        }
+        Curve fitted = curve;
+        long origin = originColumn;
+        int columns = columnCount();
+        double unitsPerPixel = unitsPerPixel();
+        samplingThread.execute(() -> {
+            double[] range = fitRange(fitted.f, origin, columns, unitsPerPixel);
+            Platform.runLater(() -> {
+                if (curve == fitted) {
+                    yCenter = range[0];
+                    ySpan = range[1];
+                    dirty = true;
+                }
+            });
+        });
+    }
+
+    /**
+    * Finds a y range for the values of f in view, from a quick sample without refinement.
+    *
+    * @Returns the centre and the span of the range
+    */
+    private static double[] fitRange(DoubleUnaryOperator f, long origin, int columns, double unitsPerPixel) {
+        PlotSampler sampler = new PlotSampler(f, unitsPerPixel);
+        sampler.update(origin, columns, Double.POSITIVE_INFINITY);
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < columns; i++) {
+            double min = sampler.getMin(origin + i);
+            double max = sampler.getMax(origin + i);
+            if (!Double.isNaN(min)) {
+                low = Math.min(low, min);
+                high = Math.max(high, max);
+            }
+        }
+        if (!(low <= high)) {
+            return new double[] {0, 3};
+        } else if (high - low < 1e-12 * Math.max(1, Math.abs(high))) {
+            return new double[] {low, Math.max(2, 2 * Math.abs(low))};
+        }
+        return new double[] {0.5 * (low + high), 1.2 * (high - low)};
+    }
+
+    /**
+    * Starts sampling the current view unless the latest samples already cover it or a request is
+    * in flight; a finished request marks the canvas dirty, which asks again for the view of that time.
+    */
+    private void requestSamples() {
+        double height = canvas.getHeight();
+        if (curve == null || sampling || height < 1) {
+            return;
+        }
+        // Curvature below half a pixel is not refined
+        SampleRequest request = new SampleRequest(curve, derivativeBox.isSelected() ? derivative : null, level,
+                unitsPerPixel(), originColumn, columnCount(), 0.5 * ySpan / height);
+        if (samples != null && samples.request.covers(request)) {
+            return;
+        }
+        sampling = true;
+        samplingThread.execute(() -> {
+            Samples result = null;
+            String error = null;
+            try {
+                result = request.sample();
+            } catch (RuntimeException ex) {
+                error = "Error: " + ex.getMessage();
+            }
+            Samples finished = result;
+            String failure = error;
+            Platform.runLater(() -> {
+                sampling = false;
+                if (request.curve != curve) {
+                    // A new plot arrived meanwhile; sample it now
+                    dirty = true;
+                } else if (failure != null) {
+                    statusLabel.setText(failure);
+                } else {
+                    samples = finished;
+                    dirty = true;
+                }
+            });
+        });
+    }
+
+    private void draw() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+        if (curve == null || width < 1 || height < 1) {
+            return;
+        }
+        int columns = columnCount();
+        double unitsPerPixel = unitsPerPixel();
+        // Samples of another zoom level do not line up with the pixels; the curve reappears once the new ones are done
+        Samples shown = samples != null && samples.request.level == level ? samples : null;
+
+        double zero = toPixel(0, height);
+        if (shown != null && areaBox.isSelected()) {
+            gc.setFill(Color.rgb(70, 130, 180, 0.3));
+            for (int i = 0; i < columns; i++) {
+                long column = originColumn + i;
+                double x = (column + 0.5) * unitsPerPixel;
+                if (x < intervalStart || x > intervalEnd || !shown.contains(column) || Double.isNaN(shown.getMin(column))) {
+                    continue;
+                }
+                double top = toPixel(Math.max(0, shown.getMax(column)), height);
+                double bottom = toPixel(Math.min(0, shown.getMin(column)), height);
+                gc.fillRect(i, top, 1, bottom - top);
+            }
+        }
+
+        gc.setStroke(Color.GRAY);
+        gc.setLineWidth(1);
+        if (zero >= 0 && zero <= height) {
+            gc.strokeLine(0, zero, width, zero);
+        }
+        long axis = -originColumn;
+        if (axis >= 0 && axis < columns) {
+            gc.strokeLine(axis, 0, axis, height);
+        }
+
+        if (shown != null) {
+            if (shown.slopeMin != null && derivativeBox.isSelected()) {
+                drawCurve(gc, shown, shown.slopeMin, shown.slopeMax, columns, height, Color.DARKORANGE);
+            }
+            drawCurve(gc, shown, shown.min, shown.max, columns, height, Color.STEELBLUE);
+        }
+    }
+
+    /**
+    * Strokes one path through the minimum-maximum range of every column, breaking it where the
+    * function has no finite value or the samples do not reach.
+    */
+    private void drawCurve(GraphicsContext gc, Samples shown, double[] mins, double[] maxes, int columns, double height, Color color) {
+        gc.setStroke(color);
+        gc.setLineWidth(1.5);
+        gc.beginPath();
+        boolean drawing = false;
+        double pen = 0;
+        for (int i = 0; i < columns; i++) {
+            long column = originColumn + i;
+            int index = (int) (column - shown.request.origin);
+            if (!shown.contains(column) || Double.isNaN(mins[index])) {
+                drawing = false;
+                continue;
+            }
+            double low = toPixel(mins[index], height);
+            double high = toPixel(maxes[index], height);
+            double x = i + 0.5;
+            // Enter each column at the end nearer the pen so neighbouring strokes join without diagonals
+            double first = Math.abs(high - pen) < Math.abs(low - pen) ? high : low;
+            double second = first == high ? low : high;
+            if (drawing) {
+                gc.lineTo(x, first);
+            } else {
+                gc.moveTo(x, first);
+                drawing = true;
+            }
+            gc.lineTo(x, second);
+            pen = second;
+        }
+        gc.stroke();
+    }
+
+    private double toPixel(double y, double height) {
+        double pixel = (0.5 - (y - yCenter) / ySpan) * height;
+        // Keep far-off values finite and small enough for the renderer
+        return Math.max(-10 * height, Math.min(11 * height, pixel));
+    }
+
+    private double unitsPerPixel() {
+        return baseUnitsPerPixel * Math.pow(ZOOM_STEP, -level);
+    }
+
+    private int columnCount() {
+        return (int) Math.ceil(canvas.getWidth() > 0 ? canvas.getWidth() : DEFAULT_WIDTH);
+    }
+
+    /** The compiled curves of a new plot and the y range that fits them. */
+    private static final class Plot {
+        final Curve curve;
+        final Curve derivative;
+        final double[] yRange;
+
+        Plot(Curve curve, Curve derivative, double[] yRange) {
+            this.curve = curve;
+            this.derivative = derivative;
+            this.yRange = yRange;
+        }
+    }
+
+    /** The view to sample, captured on the application thread. */
+    private static final class SampleRequest {
+        final Curve curve;
+        /** Null when the derivative is hidden. */
+        final Curve derivative;
+        final int level;
+        final double unitsPerPixel;
+        final long origin;
+        final int columns;
+        final double tolerance;
+
+        SampleRequest(Curve curve, Curve derivative, int level, double unitsPerPixel, long origin, int columns, double tolerance) {
+            this.curve = curve;
+            this.derivative = derivative;
+            this.level = level;
+            this.unitsPerPixel = unitsPerPixel;
+            this.origin = origin;
+            this.columns = columns;
+            this.tolerance = tolerance;
+        }
+
+        /** Tells whether samples made for this request serve the other one as well. */
+        boolean covers(SampleRequest other) {
+            return curve == other.curve && (other.derivative == null || derivative == other.derivative)
+                    && level == other.level && origin == other.origin && columns == other.columns && tolerance == other.tolerance;
+        }
+
+        /** Samples the view; runs on the sampling thread. */
+        Samples sample() {
+            PlotSampler values = curve.at(level, unitsPerPixel);
+            values.update(origin, columns, tolerance);
+            double[] min = new double[columns];
+            double[] max = new double[columns];
+            copy(values, min, max);
+            double[] slopeMin = null;
+            double[] slopeMax = null;
+            if (derivative != null) {
+                PlotSampler slopes = derivative.at(level, unitsPerPixel);
+                slopes.update(origin, columns, tolerance);
+                slopeMin = new double[columns];
+                slopeMax = new double[columns];
+                copy(slopes, slopeMin, slopeMax);
+            }
+            return new Samples(this, min, max, slopeMin, slopeMax);
+        }
+
+        private void copy(PlotSampler sampler, double[] min, double[] max) {
+            for (int i = 0; i < columns; i++) {
+                min[i] = sampler.getMin(origin + i);
+                max[i] = sampler.getMax(origin + i);
+            }
+        }
+    }
+
+    /** Finished samples, handed from the sampling thread to the application thread and never changed. */
+    private static final class Samples {
+        final SampleRequest request;
+        final double[] min;
+        final double[] max;
+        /** Null when the derivative was not sampled. */
+        final double[] slopeMin;
+        final double[] slopeMax;
+
+        Samples(SampleRequest request, double[] min, double[] max, double[] slopeMin, double[] slopeMax) {
+            this.request = request;
+            this.min = min;
+            this.max = max;
+            this.slopeMin = slopeMin;
+            this.slopeMax = slopeMax;
+        }
+
+        boolean contains(long column) {
+            return column >= request.origin && column < request.origin + request.columns;
+        }
+
+        double getMin(long column) {
+            return min[(int) (column - request.origin)];
+        }
+
+        double getMax(long column) {
+            return max[(int) (column - request.origin)];
+        }
+    }
+
+    /**
+     * A function with the samplers of its most recently drawn zoom levels.
+     */
+    private static final class Curve {
+        final DoubleUnaryOperator f;
+        private final Map<Integer, PlotSampler> levels = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, PlotSampler> eldest) {
+                return size() > CACHED_LEVELS;
+            }
+        };
+
+        Curve(DoubleUnaryOperator f) {
+            this.f = f;
+        }
+
+        PlotSampler at(int level, double unitsPerPixel) {
+            return levels.computeIfAbsent(level, key -> new PlotSampler(f, unitsPerPixel));
+        }
+    }
+}
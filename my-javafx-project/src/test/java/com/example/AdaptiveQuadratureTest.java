@@ -0,0 +1,71 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveQuadratureTest {
+    @Test
+    void adaptiveSimpsonMeetsTheTolerance() {
+        IntegrationResult result = IntegrationMethods.AdaptiveSimpsonRule(1e-10, 0, 1_000_000, 0, Math.PI, "sin(x)");
+        assertTrue(result.isConverged(), result.toString());
+        assertEquals(2.0, result.getValue(), 1e-10);
+        assertTrue(result.getErrorEstimate() <= 1e-10);
+    }
+
+    @Test
+    void gaussKronrodMeetsTheTolerance() {
+        IntegrationResult result = IntegrationMethods.GaussKronrodRule(1e-12, 0, 1_000_000, 0, 1, "4 / (1 + x^2)");
+        assertTrue(result.isConverged(), result.toString());
+        assertEquals(Math.PI, result.getValue(), 1e-12);
+    }
+
+    @Test
+    void kronrodRuleIsExactForDegree22() {
+        // The 15-point Kronrod rule integrates polynomials up to degree 3 * 7 + 1 exactly on one segment
+        IntegrationResult result = IntegrationMethods.GaussKronrodRule(1, 0, 15, -1, 1, "x^22 + x^21 + 1");
+        assertEquals(15, result.getEvaluations());
+        assertEquals(2.0 / 23 + 2, result.getValue(), 1e-15);
+        // The 7-point Gauss rule is exact up to degree 13, so the two rules agree there
+        IntegrationResult low = IntegrationMethods.GaussKronrodRule(1e-13, 0, 15, -1, 1, "x^12 + x^13");
+        assertTrue(low.isConverged(), low.toString());
+        assertEquals(2.0 / 13, low.getValue(), 1e-15);
+    }
+
+    @Test
+    void adaptiveRulesConcentrateOnTheDifficultPart() {
+        // sqrt(x) is singular in its derivative at 0 only
+        IntegrationResult result = IntegrationMethods.GaussKronrodRule(1e-10, 0, 1_000_000, 0, 1, "x^0.5");
+        assertTrue(result.isConverged(), result.toString());
+        assertEquals(2.0 / 3, result.getValue(), 1e-10);
+        assertTrue(result.getEvaluations() < 2_000, result.toString());
+    }
+
+    @Test
+    void exhaustedBudgetIsReportedAsNotConverged() {
+        IntegrationResult result = IntegrationMethods.AdaptiveSimpsonRule(1e-14, 0, 50, 0, 10, "sin(10*x)");
+        assertFalse(result.isConverged());
+        assertTrue(result.getEvaluations() <= 50);
+    }
+
+    @Test
+    void nonFiniteErrorEstimateStopsEarly() {
+        // ln(0) is -infinity, so the error estimate of the first segment is not finite
+        IntegrationResult simpson = IntegrationMethods.AdaptiveSimpsonRule(1e-8, 0, 1_000_000, 0, 1, "ln(x)");
+        assertFalse(simpson.isConverged());
+        assertEquals(5, simpson.getEvaluations());
+        // ln of a negative number is NaN, and the Kronrod rule does not sample the end points
+        IntegrationResult kronrod = IntegrationMethods.GaussKronrodRule(1e-8, 0, 1_000_000, -1, 1, "ln(x)");
+        assertFalse(kronrod.isConverged());
+        assertEquals(15, kronrod.getEvaluations());
+    }
+
+    @Test
+    void tolerancesAreChecked() {
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.AdaptiveSimpsonRule(0, 0, 100, 0, 1, "x"));
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.GaussKronrodRule(-1, 1e-6, 100, 0, 1, "x"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+class BatchMainTest {
+    private static String[] run(String jobs, JobFormat format, int threads, BatchMain.Summary[] summary) throws Exception {
+        StringWriter out = new StringWriter();
+        summary[0] = BatchMain.run(new BufferedReader(new StringReader(jobs)), out, format, threads);
+        return out.toString().split("\n");
+    }
+
+    @Test
+    void resultsKeepInputOrderAcrossChunksAndThreads() throws Exception {
+        int count = 3 * BatchMain.CHUNK_SIZE + 17;
+        StringBuilder jobs = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            jobs.append(i).append("*x,simpson,0.25,0,1\n");
+        }
+        BatchMain.Summary[] summary = new BatchMain.Summary[1];
+        String[] lines = run(jobs.toString(), JobFormat.CSV, 4, summary);
+
+        assertEquals("line,value,error", lines[0]);
+        assertEquals(count + 1, lines.length);
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines[i + 1].split(",", -1);
+            assertEquals(String.valueOf(i + 1), fields[0]);
+            assertEquals(i / 2.0, Double.parseDouble(fields[1]), 1e-12);
+        }
+        assertEquals(count, summary[0].getJobs());
+        assertEquals(0, summary[0].getFailed());
+    }
+
+    @Test
+    void failingJobsGiveErrorLinesAndTheBatchContinues() throws Exception {
+        String deep = "(".repeat(100_000) + "x" + ")".repeat(100_000);
+        String jobs = "{\"expression\":\"x\",\"method\":\"simpson\",\"h\":0.5,\"a\":0,\"b\":2}\n"
+                + "{\"expression\":\"x\",\"method\":\"no-such-rule\",\"h\":0.5,\"a\":0,\"b\":2}\n"
+                + "{\"expression\":\"" + deep + "\",\"method\":\"simpson\",\"h\":0.5,\"a\":0,\"b\":2}\n"
+                + "\n"
+                + "{\"expression\":\"1/0\",\"method\":\"simpson\",\"h\":0.5,\"a\":0,\"b\":2}\n"
+                + "{\"expression\":\"x^2\",\"method\":\"simpson\",\"h\":0.5,\"a\":0,\"b\":3}\n";
+        BatchMain.Summary[] summary = new BatchMain.Summary[1];
+        String[] lines = run(jobs, JobFormat.JSONL, 2, summary);
+
+        assertEquals(5, lines.length);
+        assertEquals("{\"line\":1,\"value\":2.0}", lines[0]);
+        assertTrue(lines[1].startsWith("{\"line\":2,\"error\":"), lines[1]);
+        assertEquals("{\"line\":3,\"error\":\"expression nested too deeply\"}", lines[2]);
+        assertTrue(lines[3].startsWith("{\"line\":5,\"error\":"), lines[3]);
+        assertEquals("{\"line\":6,\"value\":9.0}", lines[4]);
+        assertEquals(5, summary[0].getJobs());
+        assertEquals(3, summary[0].getFailed());
+    }
+}
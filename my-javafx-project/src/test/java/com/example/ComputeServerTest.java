@@ -0,0 +1,119 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ComputeServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ComputeServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new ComputeServer(0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String contentType, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + path);
+    }
+
+    @Test
+    void computeAnswersGetAndPost() throws Exception {
+        HttpResponse<String> response = get("/compute?expression=x%5E2&method=simpson&h=0.5&a=0&b=3");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"value\":9.0}", response.body());
+
+        response = post("/compute", "application/json",
+                "{\"expression\":\"x^2\",\"method\":\"simpson\",\"h\":0.5,\"a\":0,\"b\":3}");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"value\":9.0}", response.body());
+    }
+
+    @Test
+    void malformedRequestsGetBadRequest() throws Exception {
+        HttpResponse<String> response = get("/compute?expression=sin(&method=simpson&h=0.5&a=0&b=1");
+        assertEquals(400, response.statusCode());
+        assertTrue(response.body().startsWith("{\"error\":"), response.body());
+
+        response = get("/compute?expression=1/0&method=simpson&h=0.5&a=0&b=1");
+        assertEquals(400, response.statusCode());
+
+        response = post("/compute", "application/json", "not json");
+        assertEquals(400, response.statusCode());
+
+        String deep = "(".repeat(100_000) + "x" + ")".repeat(100_000);
+        response = post("/compute", "application/json",
+                "{\"expression\":\"" + deep + "\",\"method\":\"simpson\",\"h\":0.5,\"a\":0,\"b\":1}");
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"expression nested too deeply\"}", response.body());
+    }
+
+    @Test
+    void creatingAServerLeavesSystemPropertiesAlone() {
+        assertNull(System.getProperty("sun.net.httpserver.nodelay"));
+    }
+
+    @Test
+    void batchAnswersInInputOrder() throws Exception {
+        int count = 2 * BatchMain.CHUNK_SIZE + 5;
+        StringBuilder jobs = new StringBuilder("expression,method,h,a,b\n");
+        for (int i = 0; i < count; i++) {
+            jobs.append(i).append(",simpson,0.5,0,1\n");
+        }
+        jobs.append("x,no-such-rule,0.5,0,1\n");
+        HttpResponse<String> response = post("/batch", "text/csv", jobs.toString());
+        assertEquals(200, response.statusCode());
+
+        String[] lines = response.body().split("\n");
+        assertEquals(count + 2, lines.length);
+        assertEquals("line,value,error", lines[0]);
+        for (int i = 0; i < count; i++) {
+            // Line 1 of the request is the header
+            assertEquals((i + 2) + "," + (double) i + ",", lines[i + 1]);
+        }
+        assertTrue(lines[count + 1].startsWith((count + 2) + ",,"), lines[count + 1]);
+    }
+
+    @Test
+    void statsCountRequests() throws Exception {
+        get("/compute?expression=x&method=simpson&h=0.5&a=0&b=1");
+        get("/compute?expression=x&method=simpson&h=0.5&a=0&b=1");
+        // A request is timed until its exchange closes, which may be just after the client has the response
+        HttpResponse<String> response = get("/stats");
+        for (int i = 0; i < 100 && !response.body().startsWith("{\"compute\":{\"count\":2,"); i++) {
+            Thread.sleep(10);
+            response = get("/stats");
+        }
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"compute\":{\"count\":2,"), response.body());
+        assertTrue(response.body().contains("\"batch\":{\"count\":0,"), response.body());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.jupiter.api.Test;
+
+class CubatureTest {
+    private static final double[] UNIT_SQUARE = {0, 0};
+    private static final double[] ONES = {1, 1};
+
+    @Test
+    void nestedSimpsonIsExactForCubicsPerAxis() {
+        assertEquals(0.25, IntegrationMethods.NestedSimpsonRule(0.25, UNIT_SQUARE, ONES, "x*y"), 1e-15);
+        // x^2 + y*z over [0,1] x [0,2] x [0,1]: 2/3 + 1
+        assertEquals(5.0 / 3, IntegrationMethods.NestedSimpsonRule(0.5, new double[] {0, 0, 0}, new double[] {1, 2, 1}, "x^2 + y*z"), 1e-14);
+    }
+
+    @Test
+    void nestedGaussLegendreConvergesOnSmoothFunctions() {
+        double exact = (Math.E - 1) * (Math.E - 1);
+        assertEquals(exact, IntegrationMethods.NestedGaussLegendreRule(0.25, 4, UNIT_SQUARE, ONES, "e^(x+y)"), 1e-12);
+    }
+
+    @Test
+    void customVariableNamesAreUsed() {
+        assertEquals(1.0 / 6, IntegrationMethods.NestedSimpsonRule(0.5, UNIT_SQUARE, ONES, "s*t^2", "s", "t"), 1e-15);
+    }
+
+    @Test
+    void nestedSumDoesNotDependOnThePool() {
+        ToDoubleFunction<double[]> f = p -> Math.sin(p[0] * p[1]) + p[0];
+        double[] upper = {3, 2};
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            double serial = Cubature.nestedSimpson(f, UNIT_SQUARE, upper, 1e-3, single);
+            double parallel = Cubature.nestedSimpson(f, UNIT_SQUARE, upper, 1e-3, four);
+            assertEquals(serial, parallel, 0.0);
+        } finally {
+            single.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void nestedRulesRejectTooManyDimensions() {
+        double[] lower = new double[Cubature.MAX_NESTED_DIMENSIONS + 1];
+        double[] upper = new double[lower.length];
+        Arrays.fill(upper, 1);
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.NestedSimpsonRule(0.5, lower, upper, p -> 1));
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.NestedSimpsonRule(0.5, UNIT_SQUARE, new double[] {1}, p -> 1));
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.NestedSimpsonRule(1e-12, UNIT_SQUARE, ONES, p -> 1));
+    }
+
+    @Test
+    void nestedRulesRejectTooManyNodesAlongOneAxis() {
+        double[] lower = {0};
+        double[] upper = {1};
+        // 5 * 5e8 nodes would overflow an int; the product bound alone allows them
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.NestedGaussLegendreRule(2e-9, 5, lower, upper, p -> 1));
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.NestedSimpsonRule(1e-9, lower, upper, p -> 1));
+        double h = 1.0 / (Cubature.MAX_AXIS_NODES / 5);
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.NestedGaussLegendreRule(h / 2, 5, lower, upper, p -> 1));
+        assertEquals(1, IntegrationMethods.NestedGaussLegendreRule(h, 5, lower, upper, p -> 1), 1e-9);
+    }
+
+    @Test
+    void quasiMonteCarloMeetsItsTolerance() {
+        double[] lower = {0, 0, 0, 0, 0};
+        double[] upper = {1, 1, 1, 1, 1};
+        for (QuasiRandomSequence sequence : QuasiRandomSequence.values()) {
+            IntegrationResult result = IntegrationMethods.QuasiMonteCarloRule(sequence, 1e-6, 0, 1L << 24, lower, upper, "x + y + z + u + v");
+            assertTrue(result.isConverged(), sequence.toString());
+            assertTrue(result.getErrorEstimate() <= 1e-6, sequence.toString());
+            assertEquals(2.5, result.getValue(), 1e-5, sequence.toString());
+        }
+    }
+
+    @Test
+    void quasiMonteCarloIsDeterministic() {
+        ToDoubleFunction<double[]> f = p -> Math.cos(p[0] + 2 * p[1]);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            IntegrationResult first = Cubature.quasiMonteCarlo(QuasiRandomSequence.SOBOL, f, UNIT_SQUARE, ONES, 0, 0, 1L << 18,
+                    Cubature.SEED, single);
+            IntegrationResult second = Cubature.quasiMonteCarlo(QuasiRandomSequence.SOBOL, f, UNIT_SQUARE, ONES, 0, 0, 1L << 18,
+                    Cubature.SEED, four);
+            assertEquals(first.getValue(), second.getValue(), 0.0);
+            assertEquals(first.getErrorEstimate(), second.getErrorEstimate(), 0.0);
+        } finally {
+            single.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void quasiMonteCarloStopsAtTheEvaluationLimit() {
+        long limit = 4L * Cubature.REPLICATES * Cubature.INITIAL_POINTS;
+        IntegrationResult result = IntegrationMethods.QuasiMonteCarloRule(QuasiRandomSequence.SOBOL, 0, 0, limit, UNIT_SQUARE, ONES, "x*y");
+        assertFalse(result.isConverged());
+        assertEquals(limit, result.getEvaluations());
+        assertEquals(0.25, result.getValue(), 1e-4);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> IntegrationMethods.QuasiMonteCarloRule(QuasiRandomSequence.SOBOL, 0, 0, limit / 8, UNIT_SQUARE, ONES, "x*y"));
+        double[] tooMany = new double[QuasiRandomSequence.SOBOL.getMaxDimensions() + 1];
+        assertThrows(IllegalArgumentException.class,
+                () -> IntegrationMethods.QuasiMonteCarloRule(QuasiRandomSequence.SOBOL, 0, 0, limit, tooMany, tooMany, p -> 1));
+    }
+}
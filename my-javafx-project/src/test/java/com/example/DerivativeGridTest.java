@@ -0,0 +1,55 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class DerivativeGridTest {
+    @Test
+    void gridMatchesPointwiseDerivatives() {
+        double h = 1e-3;
+        DerivativeGrid grid = DerivationMethods.derivativeGrid(h, 0, 1, 2 * h, "sin(x) * e^x");
+        double[] points = grid.getPoints();
+        double[] first = grid.getFirstDerivative();
+        double[] first5 = grid.getFirstDerivative5point();
+        double[] second = grid.getSecondDerivative();
+        assertEquals(501, grid.size());
+        for (int j = 0; j < points.length; j++) {
+            double x = points[j];
+            assertEquals(DerivationMethods.firstDerivative(h, x, "sin(x) * e^x"), first[j], 1e-9);
+            assertEquals(DerivationMethods.firstDerivative5point(h, x, "sin(x) * e^x"), first5[j], 1e-9);
+            assertEquals(DerivationMethods.secondDerivative(h, x, "sin(x) * e^x"), second[j], 1e-3);
+        }
+    }
+
+    @Test
+    void neighbouringStencilsShareSamples() {
+        double h = 0.01;
+        DerivativeGrid shared = DerivationMethods.derivativeGrid(h, 0, 1, h, "x^2");
+        assertEquals(101, shared.size());
+        // One lattice of the 101 points plus two samples beyond each end
+        assertEquals(105, shared.getEvaluations());
+        DerivativeGrid separate = DerivationMethods.derivativeGrid(h, 0, 1, 10 * h, "x^2");
+        assertEquals(11, separate.size());
+        assertEquals(55, separate.getEvaluations());
+    }
+
+    @Test
+    void lastPointNeverPassesTheEnd() {
+        // (1 - 0) / 0.4 = 2.5 would round up to a point at 1.2
+        DerivativeGrid grid = DerivationMethods.derivativeGrid(0.1, 0, 1, 0.4, "x");
+        double[] points = grid.getPoints();
+        assertEquals(3, points.length);
+        assertTrue(points[points.length - 1] <= 1, String.valueOf(points[points.length - 1]));
+        // An end that is a multiple of the spacing up to rounding is still included
+        assertEquals(11, DerivationMethods.derivativeGrid(0.1, 0, 0.3 + 0.7, 0.1, "x").size());
+    }
+
+    @Test
+    void spacingMustBeAMultipleOfTheStep() {
+        assertThrows(IllegalArgumentException.class, () -> DerivationMethods.derivativeGrid(0.1, 0, 1, 0.15, "x"));
+        assertThrows(IllegalArgumentException.class, () -> DerivationMethods.derivativeGrid(0.1, 1, 0, 0.1, "x"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class DifferentiatorTest {
+    @Test
+    void symbolicDerivativesMatchClosedForms() {
+        for (double x = 0.2; x < 3; x += 0.2) {
+            assertEquals(Math.cos(x), DerivationMethods.exactFirstDerivative(x, "sin(x)"), 1e-15);
+            assertEquals(3 * x * x - 4, DerivationMethods.exactFirstDerivative(x, "x^3 - 4*x + 7"), 1e-13);
+            assertEquals(1 / x, DerivationMethods.exactFirstDerivative(x, "ln(x)"), 1e-14);
+            assertEquals(-Math.sin(x), DerivationMethods.exactSecondDerivative(x, "sin(x)"), 1e-15);
+            // x^x has a variable exponent: d/dx = x^x (ln x + 1)
+            assertEquals(Math.pow(x, x) * (Math.log(x) + 1), DerivationMethods.exactFirstDerivative(x, "x^x"), 1e-13 * Math.pow(x, x));
+            // log(x, 8) has a variable base: d/dx = -ln 8 / (x ln^2 x)
+            if (Math.abs(x - 1) > 1e-9) {
+                double expected = -Math.log(8) / (x * Math.log(x) * Math.log(x));
+                assertEquals(expected, DerivationMethods.exactFirstDerivative(x, "log(x, 8)"), 1e-12 * Math.abs(expected));
+            }
+        }
+    }
+
+    @Test
+    void forwardModeAgreesWithTheSymbolicDerivative() {
+        String[] expressions = {"sin(x)*e^x", "tan(x/2)^3", "(x^2 + 1)^0.5 / x", "x^-3 + log(2, x)"};
+        for (String expression : expressions) {
+            Expression tree = Parser.compile(expression);
+            Expression derivative = Parser.prepare(Differentiator.differentiate(tree), EvaluationMode.INTERPRETED);
+            for (double x = 0.3; x < 2; x += 0.1) {
+                double expected = derivative.applyAsDouble(x);
+                assertEquals(expected, Differentiator.derivative(tree, x), 1e-13 * Math.max(1, Math.abs(expected)), expression + " at " + x);
+            }
+        }
+    }
+
+    @Test
+    void zeroPowerHasZeroDerivativeWhereTheBaseIsZero() {
+        // The optimizer keeps u^0 for a base other than x; n * u^(n-1) would be 0 * Inf there
+        assertEquals(0.0, DerivationMethods.exactFirstDerivative(0, "sin(x)^0"));
+        assertEquals(0.0, DerivationMethods.exactSecondDerivative(0, "sin(x)^0"));
+        assertEquals(0.0, Differentiator.derivative(Parser.compile("sin(x)^0"), 0.0));
+        assertEquals(0.0, Differentiator.derivative(Parser.compile("sin(x)^0", EvaluationMode.INTERPRETED), 0.0));
+        assertEquals(0.0, DerivationMethods.firstDerivative(1e-3, 0, "sin(x)^0"));
+    }
+
+    @Test
+    void partialDerivatives() {
+        Expression f = Parser.compile("x^2 * y + sin(y)", "x", "y");
+        assertEquals(2 * 3.0 * 0.5, Differentiator.derivative(f, 0, 3, 0.5), 1e-15);
+        assertEquals(9 + Math.cos(0.5), Differentiator.derivative(f, 1, 3, 0.5), 1e-15);
+    }
+
+    @Test
+    void finiteDifferencesApproachTheExactDerivative() {
+        double x = 0.7;
+        assertEquals(Math.cos(x), DerivationMethods.firstDerivative(1e-5, x, "sin(x)"), 1e-9);
+        assertEquals(Math.cos(x), DerivationMethods.firstDerivative5point(1e-3, x, "sin(x)"), 1e-12);
+        assertEquals(-Math.sin(x), DerivationMethods.secondDerivative(1e-4, x, "sin(x)"), 1e-6);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+class ExpressionCacheTest {
+    @Test
+    void expressionsDifferingInWhitespaceShareAnEntry() {
+        ExpressionCache cache = new ExpressionCache(4);
+        Expression first = cache.get("sin(x) + 1", EvaluationMode.INTERPRETED);
+        Expression second = cache.get(" sin( x )+1 ", EvaluationMode.INTERPRETED);
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void evaluationModesAreCachedSeparately() {
+        ExpressionCache cache = new ExpressionCache(4);
+        assertNotSame(cache.get("x^2", EvaluationMode.INTERPRETED), cache.get("x^2", EvaluationMode.GENERATED));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ExpressionCache cache = new ExpressionCache(2);
+        Expression a = cache.get("x + 1", EvaluationMode.INTERPRETED);
+        Expression b = cache.get("x + 2", EvaluationMode.INTERPRETED);
+        // Using a makes b the least recently used
+        assertSame(a, cache.get("x + 1", EvaluationMode.INTERPRETED));
+        cache.get("x + 3", EvaluationMode.INTERPRETED);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(a, cache.get("x + 1", EvaluationMode.INTERPRETED));
+        assertNotSame(b, cache.get("x + 2", EvaluationMode.INTERPRETED));
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    void concurrentMissesCompileOnce() throws Exception {
+        ExpressionCache cache = new ExpressionCache(16);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Expression>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.get("sin(x)^3 + cos(x)^5", EvaluationMode.GENERATED);
+                }));
+            }
+            start.countDown();
+            Expression first = results.get(0).get();
+            for (Future<Expression> result : results) {
+                assertSame(first, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(threads - 1, cache.getHits() + cache.getCoalesced());
+    }
+
+    @Test
+    void malformedExpressionsAreNotCached() {
+        ExpressionCache cache = new ExpressionCache(4);
+        assertThrows(IllegalArgumentException.class, () -> cache.get("sin(", EvaluationMode.INTERPRETED));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(0));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import org.junit.jupiter.api.Test;
+
+class ExpressionCodeGeneratorTest {
+    private static final String[] EXPRESSIONS = {
+        "x^2 + x^3 + x^4 + x^5",
+        "(x + 0.1)^6 - (x - 0.3)^7 + (1.7*x)^8",
+        "x^-3 + (x + 1)^-5",
+        "sin(x)^2 + cos(x)^2",
+        "ln(x + 2) * e^(-x) / (1 + x^2)",
+        "tan(x / 3) - log(2, x + 3)",
+        "(x^2 + 1) * (x^2 + 1) - x^2.5",
+    };
+
+    @Test
+    void generatedAndInterpretedModesAgreeBitForBit() {
+        assumeTrue(ExpressionCodeGenerator.isAvailable());
+        for (String expression : EXPRESSIONS) {
+            Expression interpreted = Parser.compile(expression, EvaluationMode.INTERPRETED);
+            Expression generated = Parser.compile(expression, EvaluationMode.GENERATED);
+            assertNotSame(interpreted.getClass(), generated.getClass(), expression);
+            double[] xs = new double[1000];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = 0.1 + i * 1.37e-3;
+            }
+            double[] expected = new double[xs.length];
+            double[] actual = new double[xs.length];
+            interpreted.applyAll(xs, expected, xs.length);
+            generated.applyAll(xs, actual, xs.length);
+            for (int i = 0; i < xs.length; i++) {
+                double value = interpreted.applyAsDouble(xs[i]);
+                assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(generated.applyAsDouble(xs[i])), expression + " at " + xs[i]);
+                assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(expected[i]), expression + " batch at " + xs[i]);
+                assertEquals(Double.doubleToLongBits(value), Double.doubleToLongBits(actual[i]), expression + " generated batch at " + xs[i]);
+            }
+        }
+    }
+
+    @Test
+    void generatedCodeKeepsDivisionByZero() {
+        assumeTrue(ExpressionCodeGenerator.isAvailable());
+        Expression generated = Parser.compile("1 / (x - 1)", EvaluationMode.GENERATED);
+        assertThrows(ArithmeticException.class, () -> generated.applyAsDouble(1));
+    }
+
+    @Test
+    void compilingDoesNotLeakFileHandles() {
+        assumeTrue(ExpressionCodeGenerator.isAvailable());
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        assumeTrue(os instanceof UnixOperatingSystemMXBean);
+        UnixOperatingSystemMXBean unix = (UnixOperatingSystemMXBean) os;
+        // Warm up, then compare the open descriptors before and after many compilations
+        ExpressionCodeGenerator.generate(Parser.compile("x + 0.5", EvaluationMode.INTERPRETED));
+        long before = unix.getOpenFileDescriptorCount();
+        for (int i = 0; i < 20; i++) {
+            ExpressionCodeGenerator.generate(Parser.compile("x * " + i + " + 0.25", EvaluationMode.INTERPRETED));
+        }
+        long after = unix.getOpenFileDescriptorCount();
+        assertTrue(after - before < 10, before + " descriptors before, " + after + " after");
+    }
+}
@@ -0,0 +1,61 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ExpressionOptimizerTest {
+    @Test
+    void constantSubtreesAreFolded() {
+        Expression optimized = ExpressionOptimizer.optimize(Parser.compile("log(2, 8) * 3 + sin(0)"));
+        assertTrue(optimized instanceof Expression.Constant, optimized.getClass().getName());
+        assertEquals(9.0, optimized.applyAsDouble(0), 1e-15);
+    }
+
+    @Test
+    void smallIntegerPowersAreReduced() {
+        Expression optimized = ExpressionOptimizer.simplify(Parser.compile("(x + 1)^3"));
+        assertTrue(optimized instanceof Expression.IntegerPower, optimized.getClass().getName());
+        assertEquals(27.0, optimized.applyAsDouble(2));
+    }
+
+    @Test
+    void zeroPowerOfAVariableIsOne() {
+        Expression optimized = ExpressionOptimizer.simplify(Parser.compile("x^0"));
+        assertTrue(optimized instanceof Expression.Constant, optimized.getClass().getName());
+        assertEquals(1.0, optimized.applyAsDouble(Double.NaN));
+    }
+
+    @Test
+    void foldingNeverHidesADivisionByZero() {
+        assertThrows(ArithmeticException.class, () -> Parser.compile("1 / 0 + x", EvaluationMode.INTERPRETED).applyAsDouble(1));
+        assertThrows(ArithmeticException.class, () -> Parser.compile("(1 / (x - x))^0", EvaluationMode.INTERPRETED).applyAsDouble(1));
+        assertThrows(ArithmeticException.class, () -> Parser.compile("(1 / (x - x))^0 * 0", EvaluationMode.INTERPRETED).applyAsDouble(1));
+    }
+
+    @Test
+    void optimizedExpressionsAgreeWithTheTree() {
+        String[] expressions = {
+            "sin(x)^2 + sin(x) + cos(sin(x))",
+            "(x^2 + 1) / (x^2 + 1)^3 - 2^3 * x",
+            "ln(e^x + 1) * ln(e^x + 1) - (ln(e^x + 1))^2",
+            "x^-2 + x^1 + x^0.5",
+        };
+        for (String expression : expressions) {
+            Expression tree = Parser.compile(expression);
+            Expression optimized = ExpressionOptimizer.optimize(tree);
+            for (double x = 0.25; x < 4; x += 0.25) {
+                double expected = tree.applyAsDouble(x);
+                assertEquals(expected, optimized.applyAsDouble(x), 1e-13 * Math.max(1, Math.abs(expected)), expression + " at " + x);
+            }
+        }
+    }
+
+    @Test
+    void repeatedSubexpressionsBecomeAProgram() {
+        Expression optimized = ExpressionOptimizer.optimize(Parser.compile("sin(x)^2 + sin(x)"));
+        assertTrue(optimized instanceof Expression.Program, optimized.getClass().getName());
+    }
+}
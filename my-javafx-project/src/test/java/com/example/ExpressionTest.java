@@ -0,0 +1,53 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class ExpressionTest {
+    private static final String[] EXPRESSIONS = {
+        "x",
+        "3.5",
+        "-x^2 + 2*x - 7",
+        "sin(x) * cos(2*x) / (1 + x^2)",
+        "ln(1 + x^2) - log(10, x + 1) + e^x",
+        "tan(x / 4)^3 - x^-2",
+    };
+
+    @Test
+    void batchEvaluationMatchesPointwiseEvaluation() {
+        // Lengths around the column length, so partial and several columns are covered
+        int[] lengths = {0, 1, 7, Expression.COLUMN_LENGTH - 1, Expression.COLUMN_LENGTH, Expression.COLUMN_LENGTH + 1, 3 * Expression.COLUMN_LENGTH + 5};
+        for (String expression : EXPRESSIONS) {
+            Expression compiled = Parser.compile(expression);
+            for (int length : lengths) {
+                double[] xs = new double[length + 3];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = 0.05 + i * 0.0123;
+                }
+                double[] out = new double[length + 3];
+                compiled.applyAll(xs, out, length);
+                for (int i = 0; i < length; i++) {
+                    assertEquals(Double.doubleToLongBits(compiled.applyAsDouble(xs[i])), Double.doubleToLongBits(out[i]), expression + " at " + xs[i]);
+                }
+                for (int i = length; i < out.length; i++) {
+                    assertEquals(0.0, out[i], "wrote past length");
+                }
+            }
+        }
+    }
+
+    @Test
+    void batchEvaluationChecksTheLength() {
+        Expression compiled = Parser.compile("x + 1");
+        assertThrows(IllegalArgumentException.class, () -> compiled.applyAll(new double[4], new double[8], 5));
+        assertThrows(IllegalArgumentException.class, () -> compiled.applyAll(new double[8], new double[4], 5));
+    }
+
+    @Test
+    void batchEvaluationKeepsDivisionByZero() {
+        Expression compiled = Parser.compile("1 / (x - 1)");
+        assertThrows(ArithmeticException.class, () -> compiled.applyAll(new double[] {0, 1, 2}, new double[3], 3));
+    }
+}
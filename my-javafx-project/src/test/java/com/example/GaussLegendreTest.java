@@ -0,0 +1,57 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class GaussLegendreTest {
+    @Test
+    void twoPointRuleHasTheKnownNodes() {
+        GaussLegendre rule = GaussLegendre.of(2);
+        assertEquals(1 / Math.sqrt(3), Math.abs(rule.nodes[0]), 1e-15);
+        assertEquals(1 / Math.sqrt(3), Math.abs(rule.nodes[1]), 1e-15);
+        assertEquals(1.0, rule.weights[0], 1e-15);
+        assertEquals(1.0, rule.weights[1], 1e-15);
+    }
+
+    @Test
+    void weightsSumToTheIntervalLength() {
+        for (int order : new int[] {1, 3, 5, 10, 64, GaussLegendre.MAX_ORDER}) {
+            double sum = 0;
+            for (double weight : GaussLegendre.of(order).weights) {
+                sum += weight;
+            }
+            assertEquals(2.0, sum, 1e-13, "order " + order);
+        }
+    }
+
+    @Test
+    void nPointRuleIsExactUpToDegree2nMinus1() {
+        for (int order = 1; order <= 8; order++) {
+            int degree = 2 * order - 1;
+            // Integral of (x + 1)^degree over [0, 1]
+            double expected = (Math.pow(2, degree + 1) - 1) / (degree + 1);
+            double value = IntegrationMethods.GaussLegendreRule(order, 0, 1, "(x + 1)^" + degree);
+            assertEquals(expected, value, 1e-14 * expected, "order " + order);
+        }
+    }
+
+    @Test
+    void compositeRuleConvergesToTheClosedForm() {
+        assertEquals(2.0, IntegrationMethods.CompositeGaussLegendreRule(0.1, 5, 0, Math.PI, "sin(x)"), 1e-14);
+        assertEquals(Math.E - 1, IntegrationMethods.CompositeGaussLegendreRule(0.25, 5, 0, 1, "e^x"), 1e-14);
+    }
+
+    @Test
+    void tablesAreComputedOncePerOrder() {
+        assertSame(GaussLegendre.of(7), GaussLegendre.of(7));
+    }
+
+    @Test
+    void orderIsChecked() {
+        assertThrows(IllegalArgumentException.class, () -> GaussLegendre.of(0));
+        assertThrows(IllegalArgumentException.class, () -> GaussLegendre.of(GaussLegendre.MAX_ORDER + 1));
+    }
+}
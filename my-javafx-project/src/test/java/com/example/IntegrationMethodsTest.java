@@ -0,0 +1,73 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+class IntegrationMethodsTest {
+    @Test
+    void newtonCotesRulesAreExactForTheirDegree() {
+        // Midpoint and trapezoidal rules integrate lines exactly, Simpson's rule cubics
+        assertEquals(8.0, IntegrationMethods.MidpointRule(0.1, 0, 2, "3*x + 1"), 1e-13);
+        assertEquals(8.0, IntegrationMethods.TrapezoidalRule(0.1, 0, 2, "3*x + 1"), 1e-13);
+        assertEquals(4.0, IntegrationMethods.SimpsonRule(0.1, 0, 2, "x^3"), 1e-13);
+        assertEquals(-4.0, IntegrationMethods.SimpsonRule(0.1, 2, 0, "x^3"), 1e-13);
+    }
+
+    @Test
+    void newtonCotesRulesConvergeToClosedForms() {
+        double h = 1e-3;
+        assertEquals(2.0, IntegrationMethods.MidpointRule(h, 0, Math.PI, "sin(x)"), 1e-6);
+        assertEquals(2.0, IntegrationMethods.TrapezoidalRule(h, 0, Math.PI, "sin(x)"), 1e-6);
+        assertEquals(2.0, IntegrationMethods.SimpsonRule(h, 0, Math.PI, "sin(x)"), 1e-12);
+        assertEquals(Math.E - 1, IntegrationMethods.SimpsonRule(h, 0, 1, "e^x"), 1e-13);
+        assertEquals(Math.log(2), IntegrationMethods.SimpsonRule(h, 1, 2, "1/x"), 1e-13);
+    }
+
+    @Test
+    void parallelRulesMatchTheSequentialRules() {
+        double h = 1e-5;
+        String f = "sin(x) * e^(-x / 3)";
+        assertEquals(IntegrationMethods.SimpsonRule(h, 0, 10, f), IntegrationMethods.ParallelSimpsonRule(h, 0, 10, f), 1e-13);
+        assertEquals(IntegrationMethods.TrapezoidalRule(h, 0, 10, f), IntegrationMethods.ParallelTrapezoidalRule(h, 0, 10, f), 1e-13);
+        assertEquals(IntegrationMethods.MidpointRule(h, 0, 10, f), IntegrationMethods.ParallelMidpointRule(h, 0, 10, f), 1e-13);
+    }
+
+    @Test
+    void parallelSumDoesNotDependOnThePoolSize() {
+        DoubleUnaryOperator f = Parser.compile("sin(x)^2 + 1 / (1 + x)");
+        int n = 20 * GridSum.LEAF + 123;
+        double expected = parallelSum(f, n, 1);
+        for (int threads : new int[] {2, 3, 8}) {
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(parallelSum(f, n, threads)), threads + " threads");
+        }
+    }
+
+    private static double parallelSum(DoubleUnaryOperator f, int n, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return GridSum.parallelWeightedSum(f, 0, 1e-4, 0, n, 1, 2, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void compensatedSumKeepsSmallTerms() {
+        GridSum.CompensatedSum sum = new GridSum.CompensatedSum();
+        sum.add(1e16);
+        sum.add(1);
+        sum.add(-1e16);
+        assertEquals(1.0, sum.value());
+    }
+
+    @Test
+    void stepSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.SimpsonRule(0, 0, 1, "x"));
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.MidpointRule(-1, 0, 1, "x"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MetricsTest {
+    @AfterEach
+    void disable() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    void propertyUsesTheApplicationPrefix() {
+        assertEquals("integratewithease.metrics", Metrics.PROPERTY);
+    }
+
+    @Test
+    void callsAndEvaluationsAreCountedWhileEnabled() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+        IntegrationMethods.GaussLegendreRule(5, 0, 1, x -> x);
+        IntegrationMethods.CompositeGaussLegendreRule(0.25, 5, 0, 1, x -> x);
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        assertEquals(1, snapshot.getEntries().size());
+        Metrics.Entry entry = snapshot.getEntries().get(0);
+        assertEquals("gauss-legendre", entry.getName());
+        assertEquals(Metrics.Kind.INTEGRAL, entry.getKind());
+        assertEquals(2, entry.getCalls());
+        assertEquals(5 + 4 * 5, entry.getEvaluations());
+        assertEquals(2, snapshot.getTotalCalls(Metrics.Kind.INTEGRAL));
+        assertTrue(entry.getMaxNanos() >= entry.getP50Nanos());
+    }
+
+    @Test
+    void nothingIsRecordedWhileDisabled() {
+        Metrics.reset();
+        Metrics.setEnabled(false);
+        IntegrationMethods.GaussLegendreRule(5, 0, 1, x -> x);
+        assertTrue(Metrics.snapshot().getEntries().isEmpty());
+    }
+
+    @Test
+    void snapshotIsNotChangedByLaterCalls() {
+        Metrics.reset();
+        Metrics.setEnabled(true);
+        IntegrationMethods.GaussLegendreRule(5, 0, 1, x -> x);
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        IntegrationMethods.GaussLegendreRule(5, 0, 1, x -> x);
+        assertEquals(1, snapshot.getTotalCalls(Metrics.Kind.INTEGRAL));
+        assertEquals(2, Metrics.snapshot().getTotalCalls(Metrics.Kind.INTEGRAL));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class ParserTest {
+    private static final String[] EXPRESSIONS = {
+        "x^2 + 3*x - 1",
+        "sin(x) * cos(x)",
+        "e^(-x^2 / 2)",
+        "ln(x + 2) / (x + 1)^0.5",
+        "-x^3 + e*x",
+        "(x - 1) * (x + 1) / (x^2 + 1)",
+    };
+
+    @Test
+    void compiledExpressionMatchesTheParser() {
+        for (String expression : EXPRESSIONS) {
+            Expression compiled = Parser.compile(expression);
+            for (double x = -0.75; x <= 2; x += 0.25) {
+                double parsed = new Parser(expression, Map.of("x", x, "e", Math.E)).parse();
+                assertEquals(parsed, compiled.applyAsDouble(x), 1e-15 * Math.max(1, Math.abs(parsed)), expression + " at " + x);
+            }
+        }
+    }
+
+    @Test
+    void compiledExpressionIsThreadSafe() {
+        Expression compiled = Parser.compile("sin(x) * e^(-x) + x^3");
+        double[] sequential = IntStream.range(0, 100_000).mapToDouble(i -> compiled.applyAsDouble(i * 1e-4)).toArray();
+        double[] parallel = IntStream.range(0, 100_000).parallel().mapToDouble(i -> compiled.applyAsDouble(i * 1e-4)).toArray();
+        for (int i = 0; i < sequential.length; i++) {
+            assertEquals(Double.doubleToLongBits(sequential[i]), Double.doubleToLongBits(parallel[i]));
+        }
+    }
+
+    @Test
+    void severalVariables() {
+        Expression compiled = Parser.compile("x*y - z", "x", "y", "z");
+        assertEquals(5.0, compiled.evaluate(2, 3, 1));
+    }
+
+    @Test
+    void normalizeIgnoresWhitespace() {
+        assertEquals(Parser.normalize("sin( x ) + 1"), Parser.normalize("sin(x)+1"));
+    }
+
+    @Test
+    void malformedExpressionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Parser.compile("sin(x"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.compile("x +"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.compile("y + 1"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+class PlotSamplerTest {
+    @Test
+    void columnsHoldTheRangeOfTheFunction() {
+        // x^2 over column [c, c + 1] * 0.01 is increasing for c >= 0
+        PlotSampler sampler = new PlotSampler(x -> x * x, 0.01);
+        sampler.update(0, 100, 1e-6);
+        for (int c = 0; c < 100; c++) {
+            double left = c * 0.01;
+            double right = (c + 1) * 0.01;
+            assertEquals(left * left, sampler.getMin(c), 1e-15);
+            assertEquals(right * right, sampler.getMax(c), 1e-15);
+        }
+    }
+
+    @Test
+    void panningOnlySamplesNewColumns() {
+        PlotSampler sampler = new PlotSampler(Math::sin, 0.01);
+        sampler.update(0, 800, Double.POSITIVE_INFINITY);
+        // Two samples per column plus the last boundary
+        assertEquals(1601, sampler.getEvaluations());
+        sampler.update(10, 800, Double.POSITIVE_INFINITY);
+        assertEquals(1601 + 21, sampler.getEvaluations());
+    }
+
+    @Test
+    void refinementIsLimitedPerColumn() {
+        PlotSampler sampler = new PlotSampler(x -> Math.sin(1e4 * x), 1);
+        sampler.update(0, 10, 0);
+        assertTrue(sampler.getEvaluations() <= 10 * ((1L << (PlotSampler.MAX_DEPTH + 1)) + 1), String.valueOf(sampler.getEvaluations()));
+    }
+
+    @Test
+    void failedEvaluationsBecomeGaps() {
+        PlotSampler dividing = new PlotSampler(Parser.compile("1 / (x - x)"), 0.1);
+        dividing.update(0, 5, 1e-3);
+        assertTrue(Double.isNaN(dividing.getMin(2)));
+
+        PlotSampler failing = new PlotSampler(x -> {
+            if (x > 0.5) {
+                throw new IllegalStateException("out of domain");
+            }
+            return x;
+        }, 0.1);
+        failing.update(0, 10, 1e-3);
+        assertEquals(0.0, failing.getMin(0), 1e-15);
+        assertTrue(Double.isNaN(failing.getMin(9)));
+    }
+
+    @Test
+    void cancellationIsPassedOn() {
+        // Cancelled after the first batch, so the first refinement round throws inside the sampler
+        ProgressMonitor monitor = new ProgressMonitor() {
+            @Override
+            protected void progressed(long evaluations) {
+                cancel();
+            }
+        };
+        PlotSampler sampler = new PlotSampler(x -> x * x, 0.1);
+        assertThrows(CancellationException.class, () -> monitor.run(() -> {
+            sampler.update(0, 10, 0);
+            return null;
+        }));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+class ProgressMonitorTest {
+    @Test
+    void reportsTheEvaluationsOfARule() {
+        ProgressMonitor monitor = new ProgressMonitor();
+        double value = monitor.run(() -> IntegrationMethods.SimpsonRule(1e-4, 0, 1, "x^2"));
+        assertEquals(1.0 / 3, value, 1e-14);
+        // The interior points of the grid are evaluated in reported blocks
+        assertTrue(monitor.getEvaluations() >= 9_999, String.valueOf(monitor.getEvaluations()));
+        assertNull(ProgressMonitor.current());
+    }
+
+    @Test
+    void cancellingStopsTheComputation() {
+        ProgressMonitor monitor = new ProgressMonitor() {
+            @Override
+            protected void progressed(long evaluations) {
+                if (evaluations > 10 * GridSum.BLOCK) {
+                    cancel();
+                }
+            }
+        };
+        assertThrows(CancellationException.class, () -> monitor.run(() -> IntegrationMethods.SimpsonRule(1e-7, 0, 1, "sin(x)")));
+        assertTrue(monitor.isCancelled());
+        assertTrue(monitor.getEvaluations() < 1_000_000, String.valueOf(monitor.getEvaluations()));
+    }
+
+    @Test
+    void parallelRulesHandTheMonitorToTheirWorkers() {
+        ProgressMonitor monitor = new ProgressMonitor();
+        monitor.cancel();
+        assertThrows(CancellationException.class, () -> monitor.run(() -> IntegrationMethods.ParallelSimpsonRule(1e-6, 0, 1, "x")));
+        ProgressMonitor counting = new ProgressMonitor();
+        counting.run(() -> IntegrationMethods.ParallelSimpsonRule(1e-6, 0, 1, "x"));
+        assertTrue(counting.getEvaluations() >= 999_999, String.valueOf(counting.getEvaluations()));
+    }
+
+    @Test
+    void monitorsNest() {
+        ProgressMonitor outer = new ProgressMonitor();
+        ProgressMonitor inner = new ProgressMonitor();
+        outer.run(() -> {
+            assertSame(inner, inner.run(ProgressMonitor::current));
+            assertSame(outer, ProgressMonitor.current());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class QuasiRandomSequenceTest {
+    private static double[][] points(QuasiRandomSequence sequence, int dimensions, int count, long seed) {
+        QuasiRandomSequence.Generator generator = sequence.generator(dimensions, new SplittableRandom(seed));
+        double[][] points = new double[count][dimensions];
+        for (double[] point : points) {
+            generator.next(point);
+        }
+        return points;
+    }
+
+    @Test
+    void sobolPointsAreStratifiedInEveryDimension() {
+        int dimensions = QuasiRandomSequence.SOBOL.getMaxDimensions();
+        int count = 1 << 10;
+        double[][] points = points(QuasiRandomSequence.SOBOL, dimensions, count, 42);
+        for (int d = 0; d < dimensions; d++) {
+            boolean[] seen = new boolean[count];
+            for (double[] point : points) {
+                int cell = (int) (point[d] * count);
+                assertTrue(!seen[cell], "dimension " + d + " cell " + cell);
+                seen[cell] = true;
+            }
+        }
+    }
+
+    @Test
+    void firstSobolDimensionIsTheBitReversedGrayCode() {
+        // The shift cancels out against point 0, whose unshifted value is 0
+        double[][] points = points(QuasiRandomSequence.SOBOL, 1, 1 << 10, 7);
+        long origin = (long) (points[0][0] * 0x1p32);
+        for (int i = 0; i < points.length; i++) {
+            long bits = (long) (points[i][0] * 0x1p32) ^ origin;
+            assertEquals(Integer.reverse(i ^ (i >>> 1)) & 0xffffffffL, bits, "index " + i);
+        }
+    }
+
+    @Test
+    void haltonPointsAreShiftedRadicalInverses() {
+        double[][] points = points(QuasiRandomSequence.HALTON, 2, 6, 3);
+        double[][] expected = {{0, 0}, {0.5, 1.0 / 3}, {0.25, 2.0 / 3}, {0.75, 1.0 / 9}, {0.125, 4.0 / 9}, {0.625, 7.0 / 9}};
+        for (int i = 0; i < points.length; i++) {
+            for (int d = 0; d < 2; d++) {
+                double inverse = points[i][d] - points[0][d];
+                assertEquals(expected[i][d], inverse - Math.floor(inverse), 1e-12, "index " + i + " dimension " + d);
+            }
+        }
+    }
+
+    @Test
+    void seekAndCopyReproduceTheSequence() {
+        for (QuasiRandomSequence sequence : QuasiRandomSequence.values()) {
+            QuasiRandomSequence.Generator generator = sequence.generator(3, new SplittableRandom(11));
+            double[][] sequential = new double[100][3];
+            for (double[] point : sequential) {
+                generator.next(point);
+            }
+            QuasiRandomSequence.Generator copy = generator.copy();
+            copy.seek(57);
+            double[] point = new double[3];
+            copy.next(point);
+            assertArrayEquals(sequential[57], point, 0.0, sequence.toString());
+            copy.next(point);
+            assertArrayEquals(sequential[58], point, 0.0, sequence.toString());
+        }
+    }
+
+    @Test
+    void coordinatesAreStrictlyInsideTheUnitInterval() {
+        for (QuasiRandomSequence sequence : QuasiRandomSequence.values()) {
+            for (double[] point : points(sequence, sequence.getMaxDimensions(), 4096, 5)) {
+                for (double x : point) {
+                    assertTrue(x > 0 && x < 1, sequence + ": " + x);
+                }
+            }
+        }
+    }
+
+    @Test
+    void seekRejectsIndicesOutOfRange() {
+        QuasiRandomSequence.Generator sobol = QuasiRandomSequence.SOBOL.generator(1, new SplittableRandom(1));
+        assertThrows(IllegalArgumentException.class, () -> sobol.seek(-1));
+        assertThrows(IllegalArgumentException.class, () -> sobol.seek(1L << 32));
+        QuasiRandomSequence.Generator halton = QuasiRandomSequence.HALTON.generator(1, new SplittableRandom(1));
+        assertThrows(IllegalArgumentException.class, () -> halton.seek(-1));
+    }
+}
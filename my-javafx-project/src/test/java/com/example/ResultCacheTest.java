@@ -0,0 +1,158 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultCacheTest {
+    @TempDir
+    Path directory;
+
+    private static Job job(int i) {
+        return new Job(0, i + "*x", JobMethod.SIMPSON, 0.5, 0, 1);
+    }
+
+    @Test
+    void resultsAreComputedOnceAndSurviveReopening() throws IOException {
+        Path file = directory.resolve("results.cache");
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertEquals(1.5, cache.get(job(3)), 1e-15);
+            assertEquals(1.5, cache.get(job(3)), 1e-15);
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+            cache.flush();
+        }
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertEquals(1, cache.size());
+            assertEquals(1.5, cache.get(job(3)), 1e-15);
+            assertEquals(1, cache.getHits());
+            assertEquals(0, cache.getMisses());
+        }
+    }
+
+    @Test
+    void compactionKeepsTheMostRecentResultsAcrossReopening() throws IOException {
+        Path file = directory.resolve("results.cache");
+        int kept;
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            for (int i = 0; i < 200; i++) {
+                cache.get(job(i));
+            }
+            assertTrue(cache.getCompactions() > 0);
+            assertTrue(cache.getEvictions() > 0);
+            assertTrue(cache.getUsedBytes() <= cache.getCapacity());
+            kept = cache.size();
+        }
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertEquals(kept, cache.size());
+            assertEquals(0, cache.getStale());
+            assertEquals(199 / 2.0, cache.get(job(199)), 1e-12);
+            assertEquals(1, cache.getHits());
+            // The oldest results were evicted
+            cache.get(job(0));
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    void damagedRecordEndsTheScan() throws IOException {
+        Path file = directory.resolve("results.cache");
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            for (int i = 0; i < 3; i++) {
+                cache.get(job(i));
+            }
+        }
+        // Flip the first key byte of the second record; the header takes 16 bytes and a record 16 plus its key
+        int first = ResultCache.key(job(0)).getBytes(StandardCharsets.UTF_8).length;
+        long position = 16 + 16 + first + 8;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 1)).rewind();
+            channel.write(one, position);
+        }
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertEquals(1, cache.size());
+            cache.get(job(0));
+            assertEquals(1, cache.getHits());
+        }
+    }
+
+    @Test
+    void fileOfAnotherFormatStartsEmpty() throws IOException {
+        Path file = directory.resolve("results.cache");
+        Files.write(file, new byte[4096]);
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertEquals(0, cache.size());
+            cache.get(job(1));
+        }
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    void keysIncludeTheEngineVersionAndEvaluationMode() {
+        String interpreted = ResultCache.key(job(1), EvaluationMode.INTERPRETED);
+        String generated = ResultCache.key(job(1), EvaluationMode.GENERATED);
+        assertNotEquals(interpreted, generated);
+        assertTrue(interpreted.startsWith("simpson#1|" + ResultCache.ENGINE_VERSION + "|INTERPRETED|"), interpreted);
+    }
+
+    @Test
+    void resultsOfAnotherEvaluationModeAreNotReused() throws IOException {
+        assumeTrue(ExpressionCodeGenerator.isAvailable());
+        EvaluationMode mode = EvaluationMode.getDefault();
+        try (ResultCache cache = ResultCache.open(directory.resolve("results.cache"), 4096)) {
+            EvaluationMode.setDefault(EvaluationMode.INTERPRETED);
+            cache.get(job(5));
+            EvaluationMode.setDefault(EvaluationMode.GENERATED);
+            cache.get(job(5));
+            assertEquals(2, cache.getMisses());
+            assertEquals(2, cache.size());
+        } finally {
+            EvaluationMode.setDefault(mode);
+        }
+    }
+
+    @Test
+    void fileCanBeOpenedOnlyOnce() throws IOException {
+        Path file = directory.resolve("results.cache");
+        try (ResultCache cache = ResultCache.open(file, 4096)) {
+            assertThrows(IOException.class, () -> ResultCache.open(file, 4096));
+            assertEquals(0, cache.size());
+        }
+        ResultCache.open(file, 4096).close();
+    }
+
+    @Test
+    void closingTwiceIsHarmlessAndAClosedCacheRefusesWork() throws IOException {
+        ResultCache cache = ResultCache.open(directory.resolve("results.cache"), 4096);
+        cache.get(job(1));
+        cache.close();
+        cache.close();
+        assertThrows(IllegalStateException.class, () -> cache.get(job(1)));
+        assertThrows(IllegalStateException.class, cache::flush);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void sizeMustBeInRange() {
+        Path file = directory.resolve("results.cache");
+        assertThrows(IllegalArgumentException.class, () -> ResultCache.open(file, 4095));
+        assertThrows(IllegalArgumentException.class, () -> ResultCache.open(file, (1L << 30) + 1));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+class RombergTest {
+    @Test
+    void convergesToTheClosedForm() {
+        IntegrationResult result = IntegrationMethods.RombergRule(1e-13, 0, 20, 0, 1, "e^x");
+        assertTrue(result.isConverged(), result.toString());
+        assertEquals(Math.E - 1, result.getValue(), 1e-13);
+    }
+
+    @Test
+    void evaluatesEveryPointOnce() {
+        // After k levels the finest trapezoidal grid has 2^k + 1 points, and no point is evaluated twice
+        AtomicLong calls = new AtomicLong();
+        DoubleUnaryOperator f = x -> {
+            calls.incrementAndGet();
+            return Math.cos(x);
+        };
+        IntegrationResult result = IntegrationMethods.RombergRule(1e-300, 0, 10, 0, 1, f);
+        assertEquals(1, Long.bitCount(result.getEvaluations() - 1), result.toString());
+        assertEquals(result.getEvaluations(), calls.get());
+        assertEquals(Math.sin(1), result.getValue(), 1e-15);
+
+        calls.set(0);
+        IntegrationResult limited = IntegrationMethods.RombergRule(1e-300, 0, 3, 0, 1, x -> {
+            calls.incrementAndGet();
+            return Math.sqrt(x);
+        });
+        assertFalse(limited.isConverged());
+        assertEquals((1 << 3) + 1, limited.getEvaluations());
+        assertEquals(limited.getEvaluations(), calls.get());
+    }
+
+    @Test
+    void extrapolationIsExactForPolynomials() {
+        // Level k of the tableau removes the error terms up to h^(2k), so a quintic is exact from level 3 on
+        IntegrationResult result = IntegrationMethods.RombergRule(1e-12, 0, 8, -1, 2, "x^5 - 2*x^3 + x");
+        assertTrue(result.isConverged(), result.toString());
+        assertEquals(64.0 / 6 - 1.0 / 6 - 2 * (16 - 1) / 4.0 + (4 - 1) / 2.0, result.getValue(), 1e-13);
+    }
+
+    @Test
+    void levelsAreChecked() {
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.RombergRule(1e-6, 0, 0, 0, 1, "x"));
+        assertThrows(IllegalArgumentException.class, () -> IntegrationMethods.RombergRule(1e-6, 0, Romberg.MAX_LEVELS + 1, 0, 1, "x"));
+    }
+}
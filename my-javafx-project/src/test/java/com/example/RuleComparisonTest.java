@@ -0,0 +1,57 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+class RuleComparisonTest {
+    @Test
+    void allRulesComeFromOnePassOverOneGrid() {
+        AtomicLong calls = new AtomicLong();
+        DoubleUnaryOperator f = x -> {
+            calls.incrementAndGet();
+            return Math.exp(-x) * Math.cos(3 * x);
+        };
+        RuleComparison comparison = IntegrationMethods.CompareRules(0.01, 0, 2, f);
+        assertEquals(2 * 200 + 1, comparison.getEvaluations());
+        assertEquals(comparison.getEvaluations(), calls.get());
+    }
+
+    @Test
+    void rulesMatchTheSeparateRules() {
+        double h = 0.01;
+        String f = "e^(-x) * cos(3*x)";
+        RuleComparison comparison = IntegrationMethods.CompareRules(h, 0, 2, f);
+        assertEquals(IntegrationMethods.TrapezoidalRule(h, 0, 2, f), comparison.getTrapezoidal(), 1e-14);
+        assertEquals(IntegrationMethods.MidpointRule(h, 0, 2, f), comparison.getMidpoint(), 1e-14);
+        assertEquals(IntegrationMethods.SimpsonRule(h, 0, 2, f), comparison.getSimpson(), 1e-14);
+    }
+
+    @Test
+    void richardsonEstimatesTrackTheActualErrors() {
+        // Integral of sin over [0, 2] is 1 - cos 2
+        double exact = 1 - Math.cos(2);
+        RuleComparison comparison = IntegrationMethods.CompareRules(0.05, 0, 2, "sin(x)");
+        assertEstimate(comparison.getTrapezoidal() - exact, comparison.getTrapezoidalError());
+        assertEstimate(comparison.getMidpoint() - exact, comparison.getMidpointError());
+        assertEstimate(comparison.getSimpson() - exact, comparison.getSimpsonError());
+        assertTrue(Math.abs(comparison.getExtrapolated() - exact) < Math.abs(comparison.getSimpson() - exact));
+    }
+
+    private static void assertEstimate(double actual, double estimate) {
+        // Same sign and within a few percent, as the leading error term dominates at this step
+        assertEquals(actual, estimate, 0.05 * Math.abs(actual), "estimate " + estimate + " of " + actual);
+    }
+
+    @Test
+    void oddStepCountsAreRoundedUpToEven() {
+        RuleComparison comparison = IntegrationMethods.CompareRules(0.2, 0, 1, "x^3");
+        // 5 steps become 6, so Simpson's rule is still exact for the cubic
+        assertEquals(2 * 6 + 1, comparison.getEvaluations());
+        assertEquals(0.25, comparison.getSimpson(), 1e-15);
+    }
+}